@@ -0,0 +1,101 @@
+package net.sf.jclec.problem.benchmark;
+
+import net.sf.jclec.problem.classification.base.ClassificationAlgorithm;
+
+import org.apache.commons.configuration.XMLConfiguration;
+
+/**
+ * Builds the algorithms used by the benchmarks.<p/>
+ *
+ * The algorithms are configured as in the experiment files, over the first fold of one of
+ * the bundled datasets, with a fixed seed and without fitness cache, so every evaluation
+ * of a benchmark does the whole work. The benchmarks must be run from the project directory.
+ *
+ */
+
+final class BenchmarkSupport
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Constants
+	/////////////////////////////////////////////////////////////////
+
+	/** GA algorithm class name */
+
+	static final String GA_ALGORITHM = "net.sf.jclec.problem.classification.algorithm.ga.GAAlgorithm";
+
+	/** GE algorithm class name */
+
+	static final String GE_ALGORITHM = "net.sf.jclec.problem.classification.algorithm.ge.GEAlgorithm";
+
+	/** Seed of the random generators */
+
+	static final int SEED = 123456789;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	private BenchmarkSupport()
+	{
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Package methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Name of the train file of the first fold of a bundled dataset
+	 *
+	 * @param dataset dataset name (bupa, thyroid, contraceptive...)
+	 * @return the file name
+	 */
+
+	static String trainFile(String dataset)
+	{
+		return "data/" + dataset + "/" + dataset + "-10-1tra.dat";
+	}
+
+	/**
+	 * Name of the test file of the first fold of a bundled dataset
+	 *
+	 * @param dataset dataset name (bupa, thyroid, contraceptive...)
+	 * @return the file name
+	 */
+
+	static String testFile(String dataset)
+	{
+		return "data/" + dataset + "/" + dataset + "-10-1tst.dat";
+	}
+
+	/**
+	 * Creates and configures an algorithm
+	 *
+	 * @param algorithmType algorithm class name
+	 * @param dataset dataset name
+	 * @param maxDerivSize maximum number of derivations of the rules
+	 * @param populationSize population size
+	 * @return the configured algorithm
+	 * @throws Exception if the algorithm cannot be created
+	 */
+
+	static ClassificationAlgorithm createAlgorithm(String algorithmType, String dataset, int maxDerivSize, int populationSize) throws Exception
+	{
+		XMLConfiguration settings = new XMLConfiguration();
+
+		settings.addProperty("rand-gen-factory[@type]", "net.sf.jclec.util.random.RanecuFactory");
+		settings.addProperty("rand-gen-factory[@seed]", SEED);
+		settings.addProperty("population-size", populationSize);
+		settings.addProperty("max-of-generations", 1);
+		settings.addProperty("max-deriv-size", maxDerivSize);
+		settings.addProperty("cache-size", 0);
+		settings.addProperty("dataset[@type]", "net.sf.jclec.problem.util.dataset.KeelDataSet");
+		settings.addProperty("dataset.train-data", trainFile(dataset));
+		settings.addProperty("dataset.test-data", testFile(dataset));
+
+		ClassificationAlgorithm algorithm = (ClassificationAlgorithm) Class.forName(algorithmType).getDeclaredConstructor().newInstance();
+		algorithm.configure(settings);
+
+		return algorithm;
+	}
+}
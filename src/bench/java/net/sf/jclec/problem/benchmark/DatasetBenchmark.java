@@ -0,0 +1,103 @@
+package net.sf.jclec.problem.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
+import net.sf.jclec.problem.util.dataset.FileDataset;
+import net.sf.jclec.problem.util.dataset.KeelDataSet;
+import net.sf.jclec.problem.util.dataset.SnapshotDataSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the dataset loaders over the bundled datasets.
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatasetBenchmark
+{
+	/** Dataset name */
+
+	@Param({"bupa", "thyroid", "contraceptive"})
+	public String dataset;
+
+	/** Temporary directory of the snapshots, so they are not written under data */
+
+	private File snapshotDir;
+
+	/**
+	 * Writes the snapshot of the dataset before the measurements
+	 *
+	 * @throws IOException if the temporary directory cannot be created
+	 */
+
+	@Setup
+	public void setup() throws IOException
+	{
+		snapshotDir = Files.createTempDirectory("jclec-snapshots").toFile();
+
+		load(new SnapshotDataSet());
+	}
+
+	/**
+	 * Removes the snapshots after the measurements
+	 */
+
+	@TearDown
+	public void tearDown()
+	{
+		for(File file : snapshotDir.listFiles())
+			file.delete();
+
+		snapshotDir.delete();
+	}
+
+	@Benchmark
+	public FileDataset keelDataSet()
+	{
+		return load(new KeelDataSet());
+	}
+
+	@Benchmark
+	public FileDataset columnarDataSet()
+	{
+		return load(new ColumnarDataSet());
+	}
+
+	@Benchmark
+	public FileDataset snapshotDataSet()
+	{
+		return load(new SnapshotDataSet());
+	}
+
+	private FileDataset load(FileDataset fileDataset)
+	{
+		if(fileDataset instanceof SnapshotDataSet)
+			((SnapshotDataSet) fileDataset).setSnapshotDir(snapshotDir.getPath());
+
+		fileDataset.setFileName(BenchmarkSupport.trainFile(dataset));
+		fileDataset.loadInstances();
+
+		return fileDataset;
+	}
+}
@@ -0,0 +1,134 @@
+package net.sf.jclec.problem.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.problem.classification.base.ClassificationAlgorithm;
+import net.sf.jclec.problem.classification.base.Rule;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the rule evaluation.<p/>
+ *
+ * A population of the GA and GE algorithms is created for each dataset and maximum number
+ * of derivations. Every invocation evaluates the whole population as if its individuals
+ * were new: their fitness and the cached coverage of their rules are discarded first.
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark
+{
+	/** Dataset name */
+
+	@Param({"bupa", "thyroid", "contraceptive"})
+	public String dataset;
+
+	/** Maximum number of derivations of the rules */
+
+	@Param({"10", "20", "40"})
+	public int maxDerivSize;
+
+	/** Population size */
+
+	@Param({"100"})
+	public int populationSize;
+
+	/** GA algorithm and population */
+
+	private ClassificationAlgorithm ga;
+
+	private List<IIndividual> gaPopulation;
+
+	/** GE algorithm and population */
+
+	private ClassificationAlgorithm ge;
+
+	private List<IIndividual> gePopulation;
+
+	/** Train instances */
+
+	private List<IInstance> instances;
+
+	@Setup
+	public void setup() throws Exception
+	{
+		ga = BenchmarkSupport.createAlgorithm(BenchmarkSupport.GA_ALGORITHM, dataset, maxDerivSize, populationSize);
+		gaPopulation = ga.getProvider().provide(populationSize);
+
+		ge = BenchmarkSupport.createAlgorithm(BenchmarkSupport.GE_ALGORITHM, dataset, maxDerivSize, populationSize);
+		gePopulation = ge.getProvider().provide(populationSize);
+
+		instances = ga.getTrainSet().getInstances();
+	}
+
+	@Benchmark
+	public List<IIndividual> gaEvaluate()
+	{
+		reset(gaPopulation);
+		ga.getEvaluator().evaluate(gaPopulation);
+
+		return gaPopulation;
+	}
+
+	@Benchmark
+	public List<IIndividual> geEvaluate()
+	{
+		reset(gePopulation);
+		ge.getEvaluator().evaluate(gePopulation);
+
+		return gePopulation;
+	}
+
+	@Benchmark
+	public int ruleCovers()
+	{
+		int covered = 0;
+
+		for(IIndividual individual : gaPopulation)
+		{
+			Rule rule = ((SyntaxTreeRuleIndividual) individual).getPhenotype();
+
+			for(IInstance instance : instances)
+				if((Boolean) rule.covers(instance))
+					covered++;
+		}
+
+		return covered;
+	}
+
+	/**
+	 * Discards the fitness of the individuals and the cached coverage of their rules
+	 *
+	 * @param population the individuals
+	 */
+
+	private static void reset(List<IIndividual> population)
+	{
+		for(IIndividual individual : population)
+		{
+			Rule rule = ((SyntaxTreeRuleIndividual) individual).getPhenotype();
+			rule.setAntecedent(rule.getAntecedent());
+			individual.setFitness(null);
+		}
+	}
+}
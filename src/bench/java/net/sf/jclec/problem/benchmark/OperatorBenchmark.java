@@ -0,0 +1,104 @@
+package net.sf.jclec.problem.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.problem.classification.algorithm.ga.GAMutator;
+import net.sf.jclec.problem.classification.base.ClassificationAlgorithm;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeSchema;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeSpecies;
+import net.sf.jclec.syntaxtree.SyntaxTree;
+import net.sf.jclec.syntaxtree.SyntaxTreeIndividual;
+import net.sf.jclec.util.random.IRandGen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the syntax tree operators of the GA algorithm: the mutation of a rule
+ * and the creation of a new derivation tree with the grammar of the dataset.
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperatorBenchmark
+{
+	/** Dataset name */
+
+	@Param({"bupa", "thyroid", "contraceptive"})
+	public String dataset;
+
+	/** Maximum number of derivations of the rules */
+
+	@Param({"10", "20", "40"})
+	public int maxDerivSize;
+
+	/** Grammar of the dataset */
+
+	private SyntaxTreeSchema schema;
+
+	/** Random generator */
+
+	private IRandGen randgen;
+
+	/** Mutation operator */
+
+	private GAMutator mutator;
+
+	/** Parents of the mutations */
+
+	private SyntaxTree[] parents;
+
+	/** Index of the next parent */
+
+	private int next;
+
+	@Setup
+	public void setup() throws Exception
+	{
+		ClassificationAlgorithm algorithm = BenchmarkSupport.createAlgorithm(BenchmarkSupport.GA_ALGORITHM, dataset, maxDerivSize, 100);
+
+		schema = ((SyntaxTreeSpecies) algorithm.getSpecies()).getGenotypeSchema();
+		randgen = algorithm.createRandGen();
+		mutator = new GAMutator();
+
+		List<IIndividual> population = algorithm.getProvider().provide(100);
+		parents = new SyntaxTree[population.size()];
+
+		for(int i=0; i<parents.length; i++)
+			parents[i] = ((SyntaxTreeIndividual) population.get(i)).getGenotype();
+	}
+
+	@Benchmark
+	public SyntaxTree mutateSyntaxTree()
+	{
+		SyntaxTree parent = parents[next];
+		next = (next + 1) % parents.length;
+
+		return mutator.mutateSyntaxTree(parent, schema, randgen);
+	}
+
+	@Benchmark
+	public SyntaxTree fillSyntaxBranch()
+	{
+		SyntaxTree tree = new SyntaxTree();
+		schema.fillSyntaxBranch(tree, schema.getRootSymbol(), randgen.choose(schema.getMinDerivSize(), schema.getMaxDerivSize()), randgen);
+
+		return tree;
+	}
+}
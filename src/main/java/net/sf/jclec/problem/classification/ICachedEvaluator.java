@@ -0,0 +1,21 @@
+package net.sf.jclec.problem.classification;
+
+import net.sf.jclec.problem.classification.base.FitnessCache;
+
+/**
+ * Interface for the evaluators that keep a fitness cache.
+ * 
+ * Allows the listeners to report the hits and misses of the cache.
+ * 
+ */
+
+public interface ICachedEvaluator 
+{
+	/**
+	 * Access to the fitness cache of the evaluator
+	 * 
+	 * @return the fitness cache, null if caching is disabled
+	 */
+	
+	public FitnessCache getFitnessCache();
+}
@@ -0,0 +1,331 @@
+package net.sf.jclec.problem.classification;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.jclec.IAlgorithm;
+import net.sf.jclec.IConfigure;
+import net.sf.jclec.problem.classification.base.ClassificationAlgorithm;
+import net.sf.jclec.problem.util.dataset.IDataset;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.XMLConfiguration;
+
+/**
+ * Runs an experiment over all the folds of a k-fold cross validation.<p/>
+ *
+ * The experiment file points at one fold pair, e.g. data/bupa/bupa-10-1tra.dat and
+ * data/bupa/bupa-10-1tst.dat. The runner expands it into the k folds that exist next to
+ * it and executes them concurrently on a bounded pool of workers. Every fold configures
+ * its own algorithm, so it gets its own random generator factory seeded with the seed of
+ * the experiment file and its reports are the same as the ones of a sequential run.
+ *
+ * When all the folds have finished, the accuracy and runtime of each fold and their mean
+ * are written in the format of the RuleBaseReporter global report, in the files
+ * &lt;global-report-name&gt;-cv-train.txt and &lt;global-report-name&gt;-cv-test.txt.
+ * The runtime is the wall-clock time of the fold, measured while the other folds run
+ * on the same workers, so it is not the time of a sequential run.
+ *
+ * Usage: net.sf.jclec.problem.classification.RunCrossValidation &lt;experiment file&gt; [number of workers]
+ *
+ */
+
+public class RunCrossValidation
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Constants
+	/////////////////////////////////////////////////////////////////
+
+	/** Usage message */
+
+	private static final String USAGE_MES = "Usage:\tnet.sf.jclec.problem.classification.RunCrossValidation <experiment file> [number of workers]";
+
+	/** Name of a fold file: prefix, number of folds, fold and suffix (tra/tst and extension) */
+
+	private static final Pattern FOLD_PATTERN = Pattern.compile("^(.*-)(\\d+)-(\\d+)(t(?:ra|st)\\..*)$");
+
+	/** Headers of the train and test global reports */
+
+	private static final String TRAIN_REPORT_HEADER = "Dataset  							|| Accuracy || Wall-clock time(s)\n";
+
+	private static final String TEST_REPORT_HEADER = "Dataset  								|| Accuracy || Wall-clock time(s)\n";
+
+	/////////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Main method
+	 *
+	 * @param args experiment file and optional number of workers
+	 */
+
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			System.out.println(USAGE_MES);
+			System.exit(0);
+		}
+
+		int numberOfWorkers = Runtime.getRuntime().availableProcessors();
+
+		if(args.length > 1)
+			numberOfWorkers = Integer.parseInt(args[1]);
+
+		if(!new File(args[0]).exists())
+		{
+			System.out.println("Job file not found");
+			System.exit(1);
+		}
+
+		try {
+			execute(args[0], numberOfWorkers);
+		}
+		catch(ConfigurationException e) {
+			System.out.println("Configuration exception");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Executes all the folds of an experiment
+	 *
+	 * @param experiment experiment file
+	 * @param numberOfWorkers maximum number of folds executed at the same time
+	 * @throws ConfigurationException if the experiment file cannot be read
+	 */
+
+	public static void execute(final String experiment, int numberOfWorkers) throws ConfigurationException
+	{
+		XMLConfiguration settings = new XMLConfiguration(new File(experiment));
+
+		final List<String> trainFiles = expandFolds(settings.getString("process.dataset.train-data"));
+		final List<String> testFiles = expandFolds(settings.getString("process.dataset.test-data"));
+
+		if(trainFiles.size() != testFiles.size())
+			throw new ConfigurationException("The number of train and test folds does not match");
+
+		System.out.println("Initializing job: " + trainFiles.size() + " folds, " + numberOfWorkers + " workers");
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfWorkers, trainFiles.size())));
+
+		List<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+
+		for(int i = 0; i < trainFiles.size(); i++)
+		{
+			final int fold = i;
+
+			futures.add(pool.submit(new Callable<double[]>()
+			{
+				public double[] call() throws Exception
+				{
+					return executeFold(experiment, trainFiles.get(fold), testFiles.get(fold));
+				}
+			}));
+		}
+
+		pool.shutdown();
+
+		// Collect the results in fold order
+		double[][] results = new double[trainFiles.size()][];
+
+		for(int i = 0; i < futures.size(); i++)
+		{
+			try {
+				results[i] = futures.get(i).get();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				e.printStackTrace();
+			}
+			catch(ExecutionException e) {
+				System.out.println("Fold " + trainFiles.get(i) + " failed");
+				e.getCause().printStackTrace();
+			}
+		}
+
+		// Aggregated report
+		String reportDirName = settings.getString("process.listener.report-dir-name", "report");
+		String globalReportName = settings.getString("process.listener.global-report-name", "global-report");
+
+		String aux = "./";
+		if(reportDirName.split("/").length>1)
+			aux = reportDirName.split("/")[0]+"/";
+
+		try {
+			writeSummary(aux + globalReportName + "-cv-train.txt", TRAIN_REPORT_HEADER, trainFiles, results, 0);
+			writeSummary(aux + globalReportName + "-cv-test.txt", TEST_REPORT_HEADER, testFiles, results, 1);
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+
+		System.out.println("Job finished");
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Executes the algorithm of the experiment over one fold
+	 *
+	 * @param experiment experiment file
+	 * @param trainFile train file of the fold
+	 * @param testFile test file of the fold
+	 * @return train accuracy, test accuracy and wall-clock time in seconds
+	 * @throws Exception if the algorithm cannot be created or configured
+	 */
+
+	private static double[] executeFold(String experiment, String trainFile, String testFile) throws Exception
+	{
+		// Every fold reads its own copy of the settings, as the algorithms add properties to them
+		XMLConfiguration settings = new XMLConfiguration(new File(experiment));
+		settings.setProperty("process.dataset.train-data", trainFile);
+		settings.setProperty("process.dataset.test-data", testFile);
+
+		String algorithmType = settings.getString("process[@algorithm-type]");
+		IAlgorithm algorithm;
+
+		try {
+			algorithm = (IAlgorithm) Class.forName(algorithmType).getDeclaredConstructor().newInstance();
+		}
+		catch(InvocationTargetException e) {
+			// Report the exception thrown by the constructor of the algorithm
+			if(e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+
+			throw e;
+		}
+
+		System.out.println("Fold " + trainFile + " started");
+
+		long initTime = System.currentTimeMillis();
+
+		((IConfigure) algorithm).configure(settings.subset("process"));
+		algorithm.execute();
+
+		long endTime = System.currentTimeMillis();
+
+		System.out.println("Fold " + trainFile + " finished");
+
+		ClassificationAlgorithm classificationAlgorithm = (ClassificationAlgorithm) algorithm;
+		IClassifier classifier = classificationAlgorithm.getClassifier();
+
+		return new double [] {
+			accuracy(classifier, classificationAlgorithm.getTrainSet()),
+			accuracy(classifier, classificationAlgorithm.getTestSet()),
+			(endTime - initTime) / 1000.0};
+	}
+
+	/**
+	 * Obtains the accuracy of a classifier over a dataset
+	 *
+	 * @param classifier the classifier
+	 * @param dataset the dataset
+	 * @return the accuracy
+	 */
+
+	private static double accuracy(IClassifier classifier, IDataset dataset)
+	{
+		int[][] confusionMatrix = classifier.getConfusionMatrix(dataset);
+
+		int correctedClassified = 0;
+
+		for(int i = 0; i < confusionMatrix.length; i++)
+			correctedClassified += confusionMatrix[i][i];
+
+		return correctedClassified / (double) dataset.getInstances().size();
+	}
+
+	/**
+	 * Expands a fold file name into the names of all the folds that exist
+	 *
+	 * @param fileName name of a fold file
+	 * @return the names of the folds, or the file name if it does not follow the fold pattern
+	 */
+
+	private static List<String> expandFolds(String fileName)
+	{
+		List<String> files = new ArrayList<String>();
+
+		Matcher matcher = FOLD_PATTERN.matcher(fileName);
+
+		if(!matcher.matches())
+		{
+			files.add(fileName);
+			return files;
+		}
+
+		int numberOfFolds = Integer.parseInt(matcher.group(2));
+
+		for(int i = 1; i <= numberOfFolds; i++)
+		{
+			String fold = matcher.group(1) + numberOfFolds + "-" + i + matcher.group(4);
+
+			if(new File(fold).exists())
+				files.add(fold);
+			else
+				System.out.println("Fold file not found: " + fold);
+		}
+
+		return files;
+	}
+
+	/**
+	 * Writes the aggregated report of the folds
+	 *
+	 * @param fileName report file name
+	 * @param header report header
+	 * @param files dataset file of each fold
+	 * @param results results of each fold, null if the fold failed
+	 * @param accuracyIndex index of the accuracy in the results (0 train, 1 test)
+	 * @throws IOException if the report cannot be written
+	 */
+
+	private static void writeSummary(String fileName, String header, List<String> files, double[][] results, int accuracyIndex) throws IOException
+	{
+		BufferedWriter bw = new BufferedWriter(new FileWriter(fileName));
+
+		bw.write(header);
+
+		double accuracy = 0, time = 0;
+		int completed = 0;
+
+		for(int i = 0; i < results.length; i++)
+		{
+			if(results[i] == null)
+				continue;
+
+			if(completed > 0)
+				bw.write(System.getProperty("line.separator"));
+
+			bw.write(files.get(i) + "||" + results[i][accuracyIndex] + "," + results[i][2]);
+
+			accuracy += results[i][accuracyIndex];
+			time += results[i][2];
+			completed++;
+		}
+
+		if(completed > 0)
+		{
+			bw.write(System.getProperty("line.separator"));
+			bw.write("Mean (" + completed + " folds)||" + (accuracy / completed) + "," + (time / completed));
+		}
+
+		bw.close();
+	}
+}
@@ -0,0 +1,79 @@
+package net.sf.jclec.problem.classification.algorithm.fuzzyge;
+
+import net.sf.jclec.problem.classification.algorithm.ge.GEAlgorithm;
+import net.sf.jclec.problem.classification.base.RuleBase;
+import net.sf.jclec.problem.classification.fuzzyrule.FuzzyRuleBase;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Fuzzy variant of the GE classification algorithm.<p/>
+ *
+ * Evolves fuzzy rules with the GE evolutionary scheme (tournament selection, selective crossover,
+ * reproduction and one elite rule per class). The rules are built by FuzzyGESyntaxTreeSpecies,
+ * evaluated by FuzzyGEEvaluator and the best rule of each class forms a FuzzyRuleBase, which
+ * predicts the consequent of the rule that covers an instance with the highest degree.
+ *
+ * Besides the GE settings, the number of labels of the numerical attributes is read
+ * from the number-of-labels property (5 by default).
+ *
+ */
+
+public class FuzzyGEAlgorithm extends GEAlgorithm
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = 5217450917394837026L;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Empty (default) constructor
+	 */
+
+	public FuzzyGEAlgorithm()
+	{
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------- Implementing IConfigure interface
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Configuration method
+	 *
+	 * @param settings the configuration settings
+	 */
+
+	public void configure(Configuration settings)
+	{
+		settings.addProperty("species[@type]", "net.sf.jclec.problem.classification.algorithm.fuzzyge.FuzzyGESyntaxTreeSpecies");
+		settings.addProperty("species.number-of-labels", settings.getInt("number-of-labels", 5));
+		settings.addProperty("evaluator[@type]", "net.sf.jclec.problem.classification.algorithm.fuzzyge.FuzzyGEEvaluator");
+
+		//Call super.configure() method
+		super.configure(settings);
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Creates the rule base that keeps the best rule of each class
+	 *
+	 * @return a fuzzy rule base
+	 */
+
+	protected RuleBase createRuleBase()
+	{
+		return new FuzzyRuleBase();
+	}
+}
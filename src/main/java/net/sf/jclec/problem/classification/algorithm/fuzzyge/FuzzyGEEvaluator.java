@@ -0,0 +1,177 @@
+package net.sf.jclec.problem.classification.algorithm.fuzzyge;
+
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.problem.classification.algorithm.ge.GEEvaluator;
+import net.sf.jclec.problem.classification.base.FitnessCache;
+import net.sf.jclec.problem.classification.fuzzyrule.FuzzyRule;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+
+/**
+ * Evaluator of fuzzy classification rules.<p/>
+ *
+ * The fitness is the one of GEEvaluator (sensitivity * specificity * simplicity, for the class
+ * that reports the best value) computed over a fuzzy confusion matrix: every instance counts as
+ * covered by the rule with its coverage degree. The degrees of all the instances are obtained
+ * column by column with FuzzyRule.degrees(), so every membership function is evaluated once per
+ * training column and the cost of a fuzzy rule is close to the cost of a crisp rule.
+ *
+ * The certainty of the rule is the fuzzy confidence, i.e. the fraction of the coverage degree
+ * that belongs to instances of the consequent class.
+ *
+ * The fitness cache stores the fitness, consequent and certainty of the antecedents, whose
+ * membership functions are compared by their interval and labels.
+ *
+ */
+
+public class FuzzyGEEvaluator extends GEEvaluator
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = -4385513018766326473L;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Empty constructor.
+	 */
+
+	public FuzzyGEEvaluator()
+	{
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------- Getting and setting properties
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * The fuzzy rules are always evaluated on the whole dataset, so the sample is ignored
+	 * 
+	 * @param sample the indexes of the sampled instances, ignored
+	 */
+	
+	public void setSample(int[] sample)
+	{
+		this.sample = null;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * The degrees of a fuzzy rule are computed column by column, so the instances
+	 * of a rule are never split among the threads
+	 *
+	 * @return 0
+	 */
+
+	protected int numberOfInstances()
+	{
+		return 0;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------ Overwriting AbstractEvaluator methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Evaluates the individual and compute it fitness
+	 *
+	 * @param individual Individual to evaluate
+	 */
+
+	protected void evaluate(IIndividual individual)
+	{
+		FuzzyRule rule = (FuzzyRule) ((SyntaxTreeRuleIndividual) individual).getPhenotype();
+
+		// Reuse the evaluation of an equal antecedent
+		if(fitnessCache != null)
+		{
+			FitnessCache.Entry entry = fitnessCache.get(rule.getAntecedent());
+
+			if(entry != null)
+			{
+				rule.setConsequent(entry.getConsequent());
+				rule.setCertainty(entry.getCertainty());
+				individual.setFitness(new SimpleValueFitness(entry.getFitness()));
+				return;
+			}
+		}
+
+		int[] classInstances = getClassTotals();
+		int numClasses = classInstances.length;
+
+		int numInstances = columnarDataset.numberOfInstances();
+		int[] labels = columnarDataset.getClassLabels();
+
+		double[] degrees = new double[numInstances];
+		rule.degrees(columnarDataset, degrees);
+
+		// Coverage degree of each class
+		double[] classCoverage = new double[numClasses];
+		double coverage = 0.0;
+
+		for(int i=0; i<numInstances; i++)
+		{
+			coverage += degrees[i];
+
+			if(labels[i] >= 0 && labels[i] < numClasses)
+				classCoverage[labels[i]] += degrees[i];
+		}
+
+		//Calculate the fitness for each class
+		double se = -1, sp = 1, sy;
+		double seAux, spAux;
+		double tp, fp, tn, fn;
+		int bestClass = -1;
+
+		for(int i=0; i<numClasses; i++)
+		{
+			tp = classCoverage[i];
+			fp = coverage - tp;
+			fn = classInstances[i] - tp;
+			tn = numInstances - classInstances[i] - fp;
+
+			if(tp+fn == 0)
+				seAux = 1;
+			else
+				seAux = tp/(tp+fn);
+
+			if(tn+fp == 0)
+				spAux = 1;
+			else
+				spAux = tn/(tn+fp);
+
+			if(seAux*spAux == se*sp)
+				bestClass = i;
+
+			if(seAux*spAux > se*sp)
+			{
+				se = seAux;
+				sp = spAux;
+				bestClass = i;
+			}
+		}
+
+		// Assign as consequent the class that reports the best fitness
+		rule.setConsequent(bestClass);
+		rule.setCertainty(coverage > 0 ? classCoverage[bestClass] / coverage : 0.0);
+
+		double numnodes = rule.getAntecedent().size();
+
+		sy = (getMaxDerivSize() - 0.5*numnodes -0.5)/(getMaxDerivSize()-1);
+
+		individual.setFitness(new SimpleValueFitness(se*sp*sy));
+
+		if(fitnessCache != null)
+			fitnessCache.put(rule.getAntecedent(), se*sp*sy, bestClass, rule.getCertainty());
+	}
+}
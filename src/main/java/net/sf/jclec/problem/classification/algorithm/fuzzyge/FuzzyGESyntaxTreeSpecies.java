@@ -0,0 +1,247 @@
+package net.sf.jclec.problem.classification.algorithm.fuzzyge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jclec.IConfigure;
+import net.sf.jclec.problem.classification.blocks.AttributeValue;
+import net.sf.jclec.problem.classification.blocks.fuzzy.Is;
+import net.sf.jclec.problem.classification.blocks.fuzzy.Maximum;
+import net.sf.jclec.problem.classification.blocks.fuzzy.Minimum;
+import net.sf.jclec.problem.classification.blocks.fuzzy.TriangularMembershipFunction;
+import net.sf.jclec.problem.classification.fuzzyrule.FuzzyRule;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeSpecies;
+import net.sf.jclec.problem.util.dataset.attribute.CategoricalAttribute;
+import net.sf.jclec.problem.util.dataset.attribute.IAttribute;
+import net.sf.jclec.problem.util.dataset.attribute.IntegerAttribute;
+import net.sf.jclec.problem.util.dataset.attribute.NumericalAttribute;
+import net.sf.jclec.syntaxtree.NonTerminalNode;
+import net.sf.jclec.syntaxtree.SyntaxTree;
+import net.sf.jclec.syntaxtree.TerminalNode;
+import net.sf.jclec.util.range.Closure;
+import net.sf.jclec.util.range.Interval;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Species for fuzzy classification rules evolved by grammar guided genetic programming.<p/>
+ *
+ * Defines the grammar, the production rules, the terminal and non-terminal symbols to generate fuzzy rules
+ * with the structure of the GE rules, where every comparison is replaced by "attribute IS labels".
+ *
+ * Every input attribute has a triangular membership function. Numerical and integer attributes use
+ * number-of-labels evenly spaced labels over their interval, and categorical attributes use one label
+ * per category, so a categorical comparison is satisfied only by the categories in use.
+ *
+ * Main methods:
+ *   setTerminalSymbols() defines the terminal symbols (fuzzy operators, input attributes and membership functions).
+ *   setNonTerminalSymbols() defines the grammar and the production rules.
+ *
+ */
+
+public class FuzzyGESyntaxTreeSpecies extends SyntaxTreeSpecies implements IConfigure
+{
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = -5125862407930781264L;
+
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Properties
+	/////////////////////////////////////////////////////////////////
+
+	/** Number of labels of the numerical attributes */
+
+	private int numberOfLabels = 5;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Default (empty) constructor
+	 */
+
+	public FuzzyGESyntaxTreeSpecies(){
+
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------- Getting and setting properties
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Get the number of labels of the numerical attributes
+	 *
+	 * @return number of labels
+	 */
+
+	public int getNumberOfLabels()
+	{
+		return numberOfLabels;
+	}
+
+	/**
+	 * Set the number of labels of the numerical attributes
+	 *
+	 * @param numberOfLabels number of labels
+	 */
+
+	public void setNumberOfLabels(int numberOfLabels)
+	{
+		this.numberOfLabels = numberOfLabels;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------- Implementing IConfigure interface
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Configuration method
+	 *
+	 * @param settings the configuration settings
+	 */
+
+	public void configure(Configuration settings)
+	{
+		setNumberOfLabels(settings.getInt("number-of-labels", 5));
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Establishes the terminal symbols
+	 *
+	 * @param inputAttributes list of input attributes
+	 * @return list of terminal symbols
+	 */
+
+	protected List<TerminalNode> setTerminalSymbols(List<IAttribute> inputAttributes)
+	{
+		List<TerminalNode> terminals = new ArrayList<TerminalNode>();
+
+		// Number of input attribute
+		int numAttributes = inputAttributes.size();
+
+		//Set terminal symbol
+		for(int i = 0; i < numAttributes; i++)
+		{
+			//Creates a new terminal symbol and adds it to the list
+			IAttribute attribute = inputAttributes.get(i);
+			TerminalNode term = new TerminalNode(attribute.getName(), new AttributeValue());
+			((AttributeValue) term.getCode()).setAttributeIndex(i);
+			terminals.add(term);
+
+			Interval interval;
+			ArrayList<String> labelsSet = new ArrayList<String>();
+
+			//Checks the attribute type and assign the membership function domain and labels
+			switch(attribute.getType())
+			{
+				case Numerical:
+					interval = ((NumericalAttribute) attribute).intervalValues();
+					labelsSet = linguisticLabels(numberOfLabels);
+					break;
+				case Integer:
+					net.sf.jclec.util.intset.Interval integerInterval = ((IntegerAttribute) attribute).intervalValues();
+					interval = new Interval(integerInterval.getLeft(), integerInterval.getRight(), Closure.ClosedClosed);
+					labelsSet = linguisticLabels(numberOfLabels);
+					break;
+				case Categorical:
+					labelsSet.addAll(((CategoricalAttribute) attribute).getCategories());
+					interval = new Interval(0, labelsSet.size()-1, Closure.ClosedClosed);
+					break;
+				default:
+					System.out.println("Type is not supported");
+					continue;
+			}
+
+			terminals.add(new TerminalNode("labels"+attribute.getName(), new TriangularMembershipFunction(interval, null, labelsSet)));
+		}
+
+		//Set fixed fuzzy operators
+		terminals.add(new TerminalNode("IS", new Is()));
+		terminals.add(new TerminalNode("AND", new Minimum()));
+		terminals.add(new TerminalNode("OR", new Maximum()));
+
+		return terminals;
+	}
+
+	/**
+	 * Establishes the nonterminal symbols
+	 *
+	 * @param inputAttributes list of input attributes
+	 * @return list of nonterminal symbols
+	 */
+
+	protected List<NonTerminalNode> setNonTerminalSymbols(List<IAttribute> inputAttributes)
+	{
+		List<NonTerminalNode> nonTerminals = new ArrayList<NonTerminalNode>();
+
+		// Number of input attribute
+		int numAttributes = inputAttributes.size();
+
+		//Set fixed non terminal symbols
+		nonTerminals.add(new NonTerminalNode("antecedent", new String [] {"conjunction"}));
+		nonTerminals.add(new NonTerminalNode("antecedent", new String [] {"OR", "conjunction", "antecedent"}));
+		nonTerminals.add(new NonTerminalNode("conjunction", new String [] {"comparison"}));
+		nonTerminals.add(new NonTerminalNode("conjunction", new String [] {"AND", "comparison", "conjunction"}));
+		nonTerminals.add(new NonTerminalNode("comparison", new String [] {"IS", "attribute_comparison"}));
+
+		// Set non terminal symbols
+		for(int i =0 ; i<numAttributes; i++)
+		{
+			IAttribute attribute = inputAttributes.get(i);
+
+			nonTerminals.add(new NonTerminalNode("attribute_comparison", new String [] {attribute.getName(), "labels"+attribute.getName()}));
+		}
+
+		return nonTerminals;
+	}
+
+	@Override
+	public SyntaxTreeRuleIndividual createIndividual(SyntaxTree genotype) {
+		return new SyntaxTreeRuleIndividual(genotype, new FuzzyRule(genotype.getExprTree()));
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Obtains the names of the labels of a numerical attribute
+	 *
+	 * @param numberOfLabels number of labels
+	 * @return the label names, from the lowest to the highest
+	 */
+
+	private static ArrayList<String> linguisticLabels(int numberOfLabels)
+	{
+		ArrayList<String> labels = new ArrayList<String>();
+
+		if(numberOfLabels == 3)
+		{
+			labels.add("Low");
+			labels.add("Medium");
+			labels.add("High");
+		}
+		else if(numberOfLabels == 5)
+		{
+			labels.add("VeryLow");
+			labels.add("Low");
+			labels.add("Medium");
+			labels.add("High");
+			labels.add("VeryHigh");
+		}
+		else
+		{
+			for(int i = 1; i <= numberOfLabels; i++)
+				labels.add("L" + i);
+		}
+
+		return labels;
+	}
+}
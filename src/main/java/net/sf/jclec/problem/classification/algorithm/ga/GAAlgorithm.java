@@ -1,7 +1,15 @@
 package net.sf.jclec.problem.classification.algorithm.ga;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sf.jclec.IConfigure;
 import net.sf.jclec.IEvaluator;
@@ -14,12 +22,15 @@ import net.sf.jclec.base.FilteredRecombinator;
 import net.sf.jclec.fitness.SimpleValueFitness;
 import net.sf.jclec.problem.classification.base.ClassificationAlgorithm;
 import net.sf.jclec.problem.classification.base.Rule;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
 import net.sf.jclec.problem.classification.crisprule.CrispRuleBase;
 import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
-import net.sf.jclec.problem.util.dataset.instance.IInstance;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
+import org.apache.commons.configuration.ConfigurationUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
 
 
@@ -60,6 +71,46 @@ public class GAAlgorithm extends ClassificationAlgorithm
 	/** Support threshold */
 	
 	private double support;
+	
+	/** Evolve the sub-populations of all the classes concurrently */
+	
+	private boolean parallelClasses;
+	
+	/** Evolve only the class given by the execution counter */
+	
+	private boolean singleClass;
+	
+	/** Number of islands that evolve the rules of each class */
+	
+	private int islands;
+	
+	/** Generations between two migrations of the islands */
+	
+	private int migrationInterval;
+	
+	/** Number of individuals sent by an island in each migration */
+	
+	private int migrants;
+	
+	/** Send the migrants to a random island instead of the next one in the ring */
+	
+	private boolean randomTopology;
+	
+	/** Settings used to configure the algorithm of each class in parallel mode */
+	
+	private transient Configuration classSettings;
+	
+	/** Number of instances of the sample used to evaluate the offspring, 0 to use the whole training set */
+	
+	private int sampleSize;
+	
+	/** Proportion of the population re-evaluated on the whole training set in sampled mode */
+	
+	private double finalistsProb;
+	
+	/** Offspring of the last generation that were not re-evaluated on the whole training set */
+	
+	private transient List<IIndividual> rejected;
 
 	// ///////////////////////////////////////////////////////////////
 	// ------------------------------------------------- Constructors
@@ -206,6 +257,146 @@ public class GAAlgorithm extends ClassificationAlgorithm
 		return this.support;
 	}
 	
+	/**
+	 * Access to "parallelClasses" property.
+	 * 
+	 * @return true if the classes are evolved concurrently
+	 */
+
+	public boolean isParallelClasses() {
+		return parallelClasses;
+	}
+	
+	/**
+	 * Set the "parallelClasses" property.
+	 * 
+	 * @param parallelClasses evolve the classes concurrently
+	 */
+
+	public void setParallelClasses(boolean parallelClasses) {
+		this.parallelClasses = parallelClasses;
+	}
+	
+	/**
+	 * Access to "islands" property.
+	 * 
+	 * @return Number of islands of each class
+	 */
+
+	public int getIslands() {
+		return islands;
+	}
+	
+	/**
+	 * Set the "islands" property.
+	 * 
+	 * @param islands number of islands of each class, 1 for a single population
+	 */
+
+	public void setIslands(int islands) {
+		this.islands = islands;
+	}
+	
+	/**
+	 * Access to "migrationInterval" property.
+	 * 
+	 * @return Generations between two migrations
+	 */
+
+	public int getMigrationInterval() {
+		return migrationInterval;
+	}
+	
+	/**
+	 * Set the "migrationInterval" property.
+	 * 
+	 * @param migrationInterval generations between two migrations
+	 */
+
+	public void setMigrationInterval(int migrationInterval) {
+		this.migrationInterval = migrationInterval;
+	}
+	
+	/**
+	 * Access to "migrants" property.
+	 * 
+	 * @return Number of individuals sent in each migration
+	 */
+
+	public int getMigrants() {
+		return migrants;
+	}
+	
+	/**
+	 * Set the "migrants" property.
+	 * 
+	 * @param migrants number of individuals sent in each migration
+	 */
+
+	public void setMigrants(int migrants) {
+		this.migrants = migrants;
+	}
+	
+	/**
+	 * Access to "randomTopology" property.
+	 * 
+	 * @return true if the migrants are sent to a random island
+	 */
+
+	public boolean isRandomTopology() {
+		return randomTopology;
+	}
+	
+	/**
+	 * Set the "randomTopology" property.
+	 * 
+	 * @param randomTopology send the migrants to a random island instead of the next one in the ring
+	 */
+
+	public void setRandomTopology(boolean randomTopology) {
+		this.randomTopology = randomTopology;
+	}
+	
+	/**
+	 * Access to "sampleSize" property.
+	 * 
+	 * @return Number of instances of the sample, 0 if the whole training set is used
+	 */
+
+	public int getSampleSize() {
+		return sampleSize;
+	}
+	
+	/**
+	 * Set the "sampleSize" property.
+	 * 
+	 * @param sampleSize number of instances of the sample, 0 to use the whole training set
+	 */
+
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+	
+	/**
+	 * Access to "finalistsProb" property.
+	 * 
+	 * @return Current proportion of finalists
+	 */
+
+	public double getFinalistsProb() {
+		return finalistsProb;
+	}
+	
+	/**
+	 * Set the "finalistsProb" property.
+	 * 
+	 * @param finalistsProb the proportion of the population re-evaluated on the whole training set
+	 */
+
+	public void setFinalistsProb(double finalistsProb) {
+		this.finalistsProb = finalistsProb;
+	}
+	
 	/**
 	 * Set the recombinator probability
 	 * 
@@ -238,10 +429,23 @@ public class GAAlgorithm extends ClassificationAlgorithm
 
 	public void configure(Configuration settings)
 	{
+		// Keep the original settings to configure the algorithm of each class
+		boolean parallelClasses = settings.getBoolean("parallel-classes", false);
+		setParallelClasses(parallelClasses);
+		
+		int islands = settings.getInt("islands", 1);
+		setIslands(islands);
+		
+		if(parallelClasses || islands > 1)
+			classSettings = ConfigurationUtils.cloneConfiguration(settings);
+		
 		settings.addProperty("species[@type]", "net.sf.jclec.problem.classification.algorithm.ga.GASyntaxTreeSpecies");
 		settings.addProperty("evaluator[@type]", "net.sf.jclec.problem.classification.algorithm.ga.GAEvaluator");
 		settings.addProperty("evaluator.w1", settings.getDouble("w1",0.7));
 		settings.addProperty("evaluator.w2", settings.getDouble("w2",0.8));
+		settings.addProperty("evaluator.cache-size", settings.getInt("cache-size",10000));
+		settings.addProperty("evaluator.number-of-threads", settings.getInt("number-of-threads",0));
+		settings.addProperty("evaluator.chunk-size", settings.getInt("chunk-size",4));
 		settings.addProperty("provider[@type]", "net.sf.jclec.syntaxtree.SyntaxTreeCreator");
 		settings.addProperty("parents-selector[@type]", "net.sf.jclec.selector.TournamentSelector");
 		
@@ -289,6 +493,46 @@ public class GAAlgorithm extends ClassificationAlgorithm
 		// Set support
 		double support = settings.getDouble("support",0.1);
 		setSupport(support);
+		
+		// Set sampled evaluation
+		int sampleSize = settings.getInt("sample-size",0);
+		setSampleSize(sampleSize);
+		
+		double finalistsProb = settings.getDouble("finalists-prob",0.25);
+		setFinalistsProb(finalistsProb);
+		
+		// Set island model
+		int migrationInterval = settings.getInt("migration-interval",10);
+		setMigrationInterval(migrationInterval);
+		
+		int migrants = settings.getInt("migrants",2);
+		setMigrants(migrants);
+		
+		String topology = settings.getString("migration-topology","ring");
+		
+		if (!topology.equals("ring") && !topology.equals("random"))
+			throw new ConfigurationRuntimeException("Illegal migration topology: " + topology);
+		
+		setRandomTopology(topology.equals("random"));
+	}
+	
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Reads the state written by writeState() and sets the class of the restored execution in the evaluator
+	 * 
+	 * @param in checkpoint stream
+	 * @throws IOException if the state cannot be read
+	 * @throws ClassNotFoundException if a class of the state is not found
+	 */
+	
+	protected void readState(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		super.readState(in);
+		
+		((GAEvaluator) evaluator).setClassifiedClass(execution);
 	}
 	
 	/////////////////////////////////////////////////////////////////
@@ -414,6 +658,309 @@ public class GAAlgorithm extends ClassificationAlgorithm
 		}
 	}
 
+	/**
+	 * Gives the datasets already loaded to a sub-algorithm, so they are not read again.
+	 * The training set is the columnar dataset of the evaluator, shared by all the
+	 * evaluators instead of copied by each one.
+	 * 
+	 * @param algorithm the sub-algorithm, before it is configured
+	 */
+	
+	private void shareDatasets(GAAlgorithm algorithm)
+	{
+		algorithm.setTrainSet(((GAEvaluator) evaluator).getColumnarDataset());
+		algorithm.setTestSet(getTestSet());
+	}
+	
+	/**
+	 * Creates the algorithm that evolves the rules of one class in parallel mode.
+	 * It has its own evaluator, operators and elitist population, no listeners,
+	 * and a random generators factory seeded with the seed of the settings plus the class index.
+	 * 
+	 * @param classIndex the class
+	 * @return the configured algorithm
+	 */
+	private GAAlgorithm createClassAlgorithm(int classIndex)
+	{
+		Configuration settings = ConfigurationUtils.cloneConfiguration(classSettings);
+		
+		settings.clearProperty("listener[@type]");
+		settings.setProperty("parallel-classes", false);
+		settings.setProperty("checkpoint-frequency", 0);
+		settings.setProperty("rand-gen-factory[@seed]", settings.getInt("rand-gen-factory[@seed]", 1234567890) + classIndex);
+		
+		GAAlgorithm algorithm = new GAAlgorithm();
+		shareDatasets(algorithm);
+		algorithm.configure(settings);
+		
+		algorithm.singleClass = true;
+		algorithm.execution = classIndex;
+		((GAEvaluator) algorithm.evaluator).setClassifiedClass(classIndex);
+		
+		return algorithm;
+	}
+	
+	/**
+	 * Evolves the sub-populations of all the classes concurrently and
+	 * merges their rules into the classifier in class order.
+	 */
+	private void doParallelClasses()
+	{
+		int numClasses = getTrainSet().getMetadata().numberOfClasses();
+		
+		final GAAlgorithm[] algorithms = new GAAlgorithm[numClasses];
+		
+		for (int i = 0; i < numClasses; i++)
+			algorithms[i] = createClassAlgorithm(i);
+		
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(numClasses, Runtime.getRuntime().availableProcessors()));
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		
+		for (int i = 0; i < numClasses; i++)
+		{
+			final GAAlgorithm algorithm = algorithms[i];
+			
+			futures.add(pool.submit(new Runnable() {
+				public void run() {
+					algorithm.execute();
+				}
+			}));
+		}
+		
+		pool.shutdown();
+		
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Evolution of the classes interrupted", e);
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException("Error evolving the rules of a class", e.getCause());
+		}
+		
+		// Merge the rules of each class
+		for (int i = 0; i < numClasses; i++)
+		{
+			addDuplicates(algorithms[i]);
+			
+			for (Rule rule : ((CrispRuleBase) algorithms[i].getClassifier()).getClassificationRules())
+				((CrispRuleBase) classifier).addClassificationRule(rule);
+		}
+		
+		execution = numClasses;
+		generation = maxOfGenerations;
+		state = FINISHED;
+		
+		// Sort the rules of the classifier 
+		sortClassifier();
+	}
+
+	/**
+	 * Creates the algorithm of an island of a class. It has its own evaluator, operators
+	 * and a part of the population, no listeners, and a random generators factory seeded
+	 * with the seed of the settings plus the class index and the island index.
+	 * 
+	 * @param classIndex the class
+	 * @param island the island index
+	 * @return the configured algorithm
+	 */
+	private GAAlgorithm createIslandAlgorithm(int classIndex, int island)
+	{
+		Configuration settings = ConfigurationUtils.cloneConfiguration(classSettings);
+		int numClasses = getTrainSet().getMetadata().numberOfClasses();
+		
+		settings.clearProperty("listener[@type]");
+		settings.setProperty("parallel-classes", false);
+		settings.setProperty("checkpoint-frequency", 0);
+		settings.setProperty("islands", 1);
+		settings.setProperty("population-size", Math.max(2, populationSize / islands));
+		settings.setProperty("rand-gen-factory[@seed]", settings.getInt("rand-gen-factory[@seed]", 1234567890) + classIndex + island * numClasses);
+		
+		GAAlgorithm algorithm = new GAAlgorithm();
+		shareDatasets(algorithm);
+		algorithm.configure(settings);
+		
+		algorithm.singleClass = true;
+		algorithm.execution = classIndex;
+		((GAEvaluator) algorithm.evaluator).setClassifiedClass(classIndex);
+		
+		return algorithm;
+	}
+	
+	/**
+	 * Evolves the rules of each class with the island model and
+	 * adds them to the classifier in class order.
+	 */
+	private void doIslands()
+	{
+		int numClasses = getTrainSet().getMetadata().numberOfClasses();
+		
+		// The algorithm of a class in parallel mode evolves only its class
+		if (singleClass)
+			evolveIslands(execution);
+		else
+			for (int i = 0; i < numClasses; i++)
+				evolveIslands(i);
+		
+		execution = singleClass ? execution + 1 : numClasses;
+		generation = maxOfGenerations;
+		state = FINISHED;
+		
+		// Sort the rules of the classifier 
+		if (!singleClass)
+			sortClassifier();
+	}
+	
+	/**
+	 * Evolves the islands of a class, each in its own thread, and merges their
+	 * external populations with a token competition on the whole training set.
+	 * 
+	 * @param classIndex the class
+	 */
+	private void evolveIslands(int classIndex)
+	{
+		final GAAlgorithm[] algorithms = new GAAlgorithm[islands];
+		final List<Queue<IIndividual>> inboxes = new ArrayList<Queue<IIndividual>>();
+		
+		for (int i = 0; i < islands; i++)
+		{
+			algorithms[i] = createIslandAlgorithm(classIndex, i);
+			inboxes.add(new ConcurrentLinkedQueue<IIndividual>());
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(islands);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		
+		for (int i = 0; i < islands; i++)
+		{
+			final int island = i;
+			
+			futures.add(pool.submit(new Runnable() {
+				public void run() {
+					evolveIsland(algorithms[island], island, inboxes);
+				}
+			}));
+		}
+		
+		pool.shutdown();
+		
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Evolution of the islands interrupted", e);
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException("Error evolving the rules of an island", e.getCause());
+		}
+		
+		// The external populations of the islands compete for the tokens with their fitness on the whole training set
+		List<IIndividual> candidates = new ArrayList<IIndividual>();
+		
+		for (GAAlgorithm algorithm : algorithms)
+		{
+			addDuplicates(algorithm);
+			
+			for (IIndividual ind : algorithm.eset)
+			{
+				IIndividual candidate = ind.copy();
+				candidate.setFitness(null);
+				candidates.add(candidate);
+			}
+		}
+		
+		// The tokens are the instances of the class
+		execution = classIndex;
+		((GAEvaluator) evaluator).setClassifiedClass(classIndex);
+		evaluator.evaluate(candidates);
+		
+		bset = candidates;
+		eset = doTokenCompetition(candidates, new ArrayList<IIndividual>(), evaluator);
+		bset = new ArrayList<IIndividual>();
+		
+		for (IIndividual ind : eset)
+		{
+			Rule rule = ((SyntaxTreeRuleIndividual) ind).getPhenotype();
+			rule.setConsequent(classIndex);
+			
+			((CrispRuleBase) classifier).addClassificationRule(rule);
+		}
+		
+		eset.clear();
+	}
+	
+	/**
+	 * Runs the generations of an island, migrating every migrationInterval generations
+	 * 
+	 * @param island the algorithm of the island
+	 * @param index the island index
+	 * @param inboxes the migrants received by each island
+	 */
+	private void evolveIsland(GAAlgorithm island, int index, List<Queue<IIndividual>> inboxes)
+	{
+		island.doInit();
+		
+		while (island.state != FINISHED)
+		{
+			island.doIterate();
+			
+			if (island.state != FINISHED && migrationInterval > 0 && island.generation % migrationInterval == 0)
+				migrate(island, index, inboxes);
+		}
+	}
+	
+	/**
+	 * Sends copies of the best individuals of an island to another island and replaces
+	 * the worst individuals of the island with the migrants it has received. The migrants
+	 * are evaluated again by the island, as their fitness was modified by the token
+	 * competition of their original island.
+	 * 
+	 * @param island the algorithm of the island
+	 * @param index the island index
+	 * @param inboxes the migrants received by each island
+	 */
+	private void migrate(GAAlgorithm island, int index, List<Queue<IIndividual>> inboxes)
+	{
+		List<IIndividual> ranked = island.bettersSelector.select(island.bset);
+		
+		// Send copies of the best individuals
+		int target;
+		
+		if (randomTopology)
+			target = (index + 1 + island.randgen.choose(0, islands - 1)) % islands;
+		else
+			target = (index + 1) % islands;
+		
+		for (int i = 0; i < migrants && i < ranked.size(); i++)
+			inboxes.get(target).offer(ranked.get(i).copy());
+		
+		// Receive the migrants that have arrived
+		List<IIndividual> immigrants = new ArrayList<IIndividual>();
+		IIndividual immigrant;
+		
+		while ((immigrant = inboxes.get(index).poll()) != null)
+			if (immigrants.size() < ranked.size())
+			{
+				immigrant.setFitness(null);
+				immigrants.add(immigrant);
+			}
+		
+		if (immigrants.isEmpty())
+			return;
+		
+		island.evaluator.evaluate(immigrants);
+		
+		List<IIndividual> population = new ArrayList<IIndividual>(ranked.subList(0, ranked.size() - immigrants.size()));
+		population.addAll(immigrants);
+		
+		island.bset = population;
+	}
+	
 	/**
 	 * Performs the token competition between two populations.
 	 * 
@@ -440,41 +987,34 @@ public class GAAlgorithm extends ClassificationAlgorithm
 		else
 			unitepopulation = bettersSelector.select(unitepopulation);
 		
-		ArrayList<IInstance> instances = getTrainSet().getInstances();
-		int numInstances = instances.size();
+		ColumnarDataSet dataset = ((GAEvaluator) evaluator).getColumnarDataset();
+		InstanceBitSet positives = dataset.getClassBitSet(execution);
+		int[] positiveWords = dataset.getClassWordIndex(execution);
 		
-		boolean[] patternsCovered = new boolean[numInstances];
+		InstanceBitSet patternsCovered = new InstanceBitSet(dataset.numberOfInstances());
+		int nPositives = positives.cardinality(), nSeized = 0;
 		
 		int uniteSize = unitepopulation.size();
 		// For each individual from the population
 		for (int i = 0; i < uniteSize; i++)
 		{
-			// Individual conversion
-			Rule rule = (Rule) ((SyntaxTreeRuleIndividual) unitepopulation.get(i)).getPhenotype();
+			// When all the tokens are seized the rest of the individuals cannot seize any
+			if (nSeized == nPositives)
+			{
+				unitepopulation.get(i).setFitness(new SimpleValueFitness(0.0));
+				continue;
+			}
+			
+			// Individual conversion, the coverage of the survivors was computed in previous generations
+			CrispRule rule = (CrispRule) ((SyntaxTreeRuleIndividual) unitepopulation.get(i)).getPhenotype();
+
+			InstanceBitSet covered = rule.getCoverage(dataset);
 
 			// Number of times that the patterns is covered
-			coversCount = 0;
+			coversCount = covered.andCardinality(positives, positiveWords);
 			// Number of patterns covered
-			nPatternsCovered = 0;
-			
-			for(int j=0; j<numInstances; j++)
-			{
-				IInstance instance = instances.get(j);
-				
-				if(instance.getValue(getTrainSet().getMetadata().getClassIndex()) == execution) 
-				{
-					if((Boolean) rule.covers(instance))
-					{
-						coversCount++;
-					
-						if(!patternsCovered[j])
-						{
-							patternsCovered[j] = true;
-							nPatternsCovered++;
-						}
-					}
-				}
-			}
+			nPatternsCovered = patternsCovered.addAnd(covered, positives, positiveWords);
+			nSeized += nPatternsCovered;
 			
 			// The fitness is modified based on the token competition
 			if (nPatternsCovered != 0) 
@@ -494,6 +1034,65 @@ public class GAAlgorithm extends ClassificationAlgorithm
 		return eset;
 	}
 	
+	/**
+	 * Evaluates the new offspring on the sample and re-evaluates the best of them on the
+	 * whole training set. The rest of the new offspring get a fitness of 0, as the rules
+	 * that win no token, and are kept apart from the token competition.
+	 * 
+	 * @param offspring the offspring
+	 * @return the offspring that already had a fitness and the finalists
+	 */
+	private List<IIndividual> evaluateOnSample(List<IIndividual> offspring)
+	{
+		List<IIndividual> evaluated = new ArrayList<IIndividual>();
+		List<IIndividual> sampled = new ArrayList<IIndividual>();
+		
+		// The individuals not modified by the operators keep their fitness
+		for (IIndividual ind : offspring)
+			if (ind.getFitness() == null)
+				sampled.add(ind);
+			else
+				evaluated.add(ind);
+		
+		evaluator.evaluate(sampled);
+		
+		List<IIndividual> ranked = bettersSelector.select(sampled);
+		
+		int finalistsSize = Math.min(ranked.size(), (int) Math.round(populationSize * finalistsProb));
+		
+		List<IIndividual> finalists = new ArrayList<IIndividual>(ranked.subList(0, finalistsSize));
+		rejected = new ArrayList<IIndividual>(ranked.subList(finalistsSize, ranked.size()));
+		
+		for (IIndividual ind : rejected)
+			ind.setFitness(new SimpleValueFitness(0.0));
+		
+		// Evaluate the finalists on the whole training set
+		((GAEvaluator) evaluator).setSample(null);
+		
+		for (IIndividual ind : finalists)
+			ind.setFitness(null);
+		
+		evaluator.evaluate(finalists);
+		
+		evaluated.addAll(finalists);
+		
+		return evaluated;
+	}
+	
+	/**
+	 * Sorts the rules of the classifier and removes the rules that cover the
+	 * same training instances as a previous one, if it is enabled
+	 */
+	private void sortClassifier()
+	{
+		ColumnarDataSet dataset = ((GAEvaluator) evaluator).getColumnarDataset();
+		
+		((GAClassifier) classifier).sortClassifier(dataset);
+		
+		if (isRemoveEquivalentRules())
+			((CrispRuleBase) classifier).removeEquivalentRules(dataset);
+	}
+	
 	// ///////////////////////////////////////////////////////////////
 	// ------------------------- Overwriting java.lang.Object methods
 	// ///////////////////////////////////////////////////////////////
@@ -521,6 +1120,27 @@ public class GAAlgorithm extends ClassificationAlgorithm
 	// ---------------------------- Overwriting BaseAlgorithm methods
 	// ///////////////////////////////////////////////////////////////
 
+	@Override
+	protected void doInit() 
+	{
+		// In parallel mode the populations are created by the algorithm of each class or island
+		if (parallelClasses || islands > 1)
+			bset = new ArrayList<IIndividual>();
+		else
+			super.doInit();
+	}
+	
+	@Override
+	protected void doIterate() 
+	{
+		if (parallelClasses)
+			doParallelClasses();
+		else if (islands > 1)
+			doIslands();
+		else
+			super.doIterate();
+	}
+
 	@Override
 	protected void doSelection() 
 	{
@@ -551,8 +1171,17 @@ public class GAAlgorithm extends ClassificationAlgorithm
 		mset = mutator.mutate(rset);
 		// Add non-mutated inds
 		mset.addAll(mutator.getSterile());
+		// Replace the clones before they are evaluated
+		mset = removeDuplicates(mset);
 		
-		evaluator.evaluate(mset);
+		// The offspring are ranked on a new stratified sample of the training set
+		if (sampleSize > 0)
+			((GAEvaluator) evaluator).setSample(((GAEvaluator) evaluator).getColumnarDataset().stratifiedSample(sampleSize, randgen));
+		
+		if (((GAEvaluator) evaluator).getSample() != null)
+			mset = evaluateOnSample(mset);
+		else
+			evaluator.evaluate(mset);
 		
 		// Reproduction
 		for (IIndividual ind : bset)
@@ -569,9 +1198,19 @@ public class GAAlgorithm extends ClassificationAlgorithm
 	@Override
 	protected void doUpdate()
 	{
+		// Collapse the rules that cover the same instances
+		cset = removeEquivalentRules(cset, ((GAEvaluator) evaluator).getColumnarDataset());
+		
 		// Do token competition
 		eset = doTokenCompetition(cset, eset, evaluator);
 		
+		// The offspring that were not finalists only fill the population
+		if (rejected != null)
+		{
+			cset.addAll(rejected);
+			rejected = null;
+		}
+		
 		bset = bettersSelector.select(cset, populationSize);
 
 		// Clears parents and offsprings
@@ -597,13 +1236,21 @@ public class GAAlgorithm extends ClassificationAlgorithm
 				((CrispRuleBase) classifier).addClassificationRule(rule);				
 			}
 			
+			// The algorithm of a class in parallel mode finishes after its class
+			if (singleClass)
+			{
+				state = FINISHED;
+				
+				return;
+			}
+			
 			// If all classes have been covered then finish
 			if (execution == getTrainSet().getMetadata().numberOfClasses()) 
 			{
 				state = FINISHED;
 				
 				// Sort the rules of the classifier 
-				((GAClassifier) classifier).sortClassifier(getTrainSet());
+				sortClassifier();
 				
 				return;
 			}
@@ -4,9 +4,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import net.sf.jclec.problem.classification.base.Rule;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
 import net.sf.jclec.problem.classification.crisprule.CrispRuleBase;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
 import net.sf.jclec.problem.util.dataset.IDataset;
-import net.sf.jclec.problem.util.dataset.instance.IInstance;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
 
 /**
  * Classifier for Tan et al. 2002 - Mining multiple comprehensible classification rules using genetic programming<p/>
@@ -59,28 +61,29 @@ public class GAClassifier extends CrispRuleBase
 		fn = new int[numRules];
 		fp = new int[numRules];
 		
-		// Calculates the confusion matrix for each rule
-		for(IInstance instance : dataset.getInstances())
+		ColumnarDataSet columnarDataset;
+		
+		if(dataset instanceof ColumnarDataSet)
+			columnarDataset = (ColumnarDataSet) dataset;
+		else
+			columnarDataset = new ColumnarDataSet(dataset);
+		
+		int numInstances = columnarDataset.numberOfInstances();
+		
+		// Calculates the confusion matrix for each rule from its coverage
+		for (int i = 0; i < numRules; i++)
 		{
-			double value = instance.getValue(dataset.getMetadata().getClassIndex());
+			CrispRule rule = (CrispRule) getClassificationRule(i);
 			
-			for (int i = 0; i < numRules; i++)
-			{
-				if ((Boolean) getClassificationRules().get(i).covers(instance))
-				{
-					if (getClassificationRules().get(i).getConsequent() == value)
-						tp[i]++;
-					else
-						fp[i]++;
-				}
-				else
-				{
-					if (getClassificationRules().get(i).getConsequent() != value)
-						tn[i]++;
-					else
-						fn[i]++;
-				}
-			}
+			InstanceBitSet covered = rule.getCoverage(columnarDataset);
+			InstanceBitSet positives = columnarDataset.getClassBitSet((int) rule.getConsequent());
+			
+			int numCovered = covered.cardinality();
+			
+			tp[i] = covered.andCardinality(positives);
+			fp[i] = numCovered - tp[i];
+			fn[i] = positives.cardinality() - tp[i];
+			tn[i] = numInstances - numCovered - fn[i];
 		}
 	
 		// Calculates the sensitivity for each rule
@@ -5,14 +5,16 @@ import java.util.Comparator;
 import net.sf.jclec.IConfigure;
 import net.sf.jclec.IFitness;
 import net.sf.jclec.IIndividual;
-import net.sf.jclec.base.AbstractParallelEvaluator;
 import net.sf.jclec.fitness.SimpleValueFitness;
 import net.sf.jclec.fitness.ValueFitnessComparator;
-import net.sf.jclec.problem.classification.base.Rule;
+import net.sf.jclec.problem.classification.ICachedEvaluator;
+import net.sf.jclec.problem.classification.base.AbstractForkJoinEvaluator;
+import net.sf.jclec.problem.classification.base.FitnessCache;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
 import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
 import net.sf.jclec.problem.util.dataset.IDataset;
-import net.sf.jclec.problem.util.dataset.instance.IInstance;
-import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
 
 import org.apache.commons.configuration.Configuration;
 
@@ -23,9 +25,12 @@ import org.apache.commons.configuration.Configuration;
  * Sensitivity and specificity are evaluated and weighted to build the fitness measure for the individual.
  * The weights allows for defining the importance of sensitivity and specificity for each data problem, i.e., cost-sensitive learning.
  * 
+ * When a sample of the instances is set, the confusion matrix is computed on the sampled instances only.
+ * These fitness values are not cached, as they are only used to rank the offspring of one generation.
+ * 
  */
 
-public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
+public class GAEvaluator extends AbstractForkJoinEvaluator implements IConfigure, ICachedEvaluator
 {
 	/////////////////////////////////////////////////////////////////
 	//--------------------------------------- Serialization constant
@@ -42,6 +47,14 @@ public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
 	/** Train Dataset */
 
 	protected IDataset dataset;
+	
+	/** Columnar view of the train dataset, scanned by the evaluation */
+	
+	protected ColumnarDataSet columnarDataset;
+	
+	/** Fitness cache, null if caching is disabled */
+	
+	protected FitnessCache fitnessCache;
 
 	/** Maximize the fitness function */
 
@@ -54,6 +67,10 @@ public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
 	/** Parameters to take into the simplicity of the rule */	
 
 	protected double w1, w2;
+	
+	/** Instances used to evaluate the individuals, null to use the whole dataset */
+	
+	protected int[] sample;
 
 	/** Fitness comparator */
 
@@ -86,6 +103,17 @@ public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
 		return this.dataset;
 	}
 	
+	/**
+	 * Get the columnar view of the dataset
+	 * 
+	 * @return columnar dataset
+	 */
+	
+	public ColumnarDataSet getColumnarDataset()
+	{
+		return this.columnarDataset;
+	}
+	
 	/**
 	 * Set the dataset
 	 * 
@@ -95,6 +123,61 @@ public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
 	public void setDataset(IDataset dataset)
 	{
 		this.dataset = dataset;
+		
+		if(dataset instanceof ColumnarDataSet)
+			this.columnarDataset = (ColumnarDataSet) dataset;
+		else
+			this.columnarDataset = new ColumnarDataSet(dataset);
+		
+		this.sample = null;
+		
+		if(fitnessCache != null)
+			fitnessCache.clear();
+	}
+	
+	/**
+	 * Get the sample of instances used to evaluate the individuals
+	 * 
+	 * @return the indexes of the sampled instances, null if the whole dataset is used
+	 */
+	
+	public int[] getSample()
+	{
+		return sample;
+	}
+	
+	/**
+	 * Set the sample of instances used to evaluate the individuals
+	 * 
+	 * @param sample the indexes of the sampled instances, null to use the whole dataset
+	 */
+	
+	public void setSample(int[] sample)
+	{
+		this.sample = sample;
+	}
+	
+	/**
+	 * Set the maximum number of entries of the fitness cache
+	 * 
+	 * @param cacheSize cache capacity, 0 disables the cache
+	 */
+	
+	public void setCacheSize(int cacheSize)
+	{
+		if(cacheSize > 0)
+			this.fitnessCache = new FitnessCache(cacheSize);
+		else
+			this.fitnessCache = null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	
+	public FitnessCache getFitnessCache()
+	{
+		return fitnessCache;
 	}
 	
 	/**
@@ -142,6 +225,10 @@ public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
 	 */
 	public void setClassifiedClass(int classifiedClass) {
 		this.classifiedClass = classifiedClass;
+		
+		// Cached fitness values belong to the previous class
+		if(fitnessCache != null)
+			fitnessCache.clear();
 	}
 
 	/**
@@ -170,6 +257,15 @@ public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
 
 		float w2 = settings.getFloat("w2", 0.8f);
 		setW2(w2);
+		
+		int cacheSize = settings.getInt("cache-size", 10000);
+		setCacheSize(cacheSize);
+		
+		int numberOfThreads = settings.getInt("number-of-threads", 0);
+		setNumberOfThreads(numberOfThreads);
+		
+		int chunkSize = settings.getInt("chunk-size", 4);
+		setChunkSize(chunkSize);
 	}
 
 	// ///////////////////////////////////////////////////////////////
@@ -184,34 +280,133 @@ public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
 
 	protected void evaluate(IIndividual individual) 
 	{
-		Rule rule = (Rule) ((SyntaxTreeRuleIndividual) individual).getPhenotype();
+		CrispRule rule = (CrispRule) ((SyntaxTreeRuleIndividual) individual).getPhenotype();
 		
-		int tp = 0, fp = 0, tn = 0, fn = 0;
-				
-		IMetadata metadata = getDataset().getMetadata();
+		if(sample != null)
+		{
+			evaluateSample(individual, rule);
+			return;
+		}
+		
+		// Reuse the evaluation of an equal antecedent
+		if(fitnessCache != null)
+		{
+			FitnessCache.Entry entry = fitnessCache.get(rule.getAntecedent());
+			
+			if(entry != null)
+			{
+				rule.setCoverage(columnarDataset, entry.getCoverage());
+				individual.setFitness(new SimpleValueFitness(entry.getFitness()));
+				return;
+			}
+		}
+		
+		int tp, fp, tn, fn, numCovered;
+		
+		InstanceBitSet positives = columnarDataset.getClassBitSet(classifiedClass);
+		int numPositives = positives.cardinality();
 		
 		//Calculate the confusion matrix
-		for(IInstance instance : dataset.getInstances())
+		if(isDataParallel() && !rule.hasCoverage(columnarDataset))
+		{
+			// The instances are split among the threads
+			int numClasses = dataset.getMetadata().numberOfClasses();
+			int[] counts = countCoverage(rule, columnarDataset, numClasses);
+			
+			numCovered = counts[numClasses];
+			tp = classifiedClass < numClasses ? counts[classifiedClass] : 0;
+		}
+		else
 		{
-			double value = instance.getValue(metadata.getClassIndex());
+			InstanceBitSet covered = rule.getCoverage(columnarDataset);
 			
-			if((Boolean) rule.covers(instance))
-			{		
-				if (value == classifiedClass)
+			numCovered = covered.cardinality();
+			tp = covered.andCardinality(positives);
+		}
+		
+		fp = numCovered - tp;
+		fn = numPositives - tp;
+		tn = columnarDataset.numberOfInstances() - numCovered - fn;
+		
+		double fitness = fitness(tp, fp, tn, fn);
+		
+		if(fitnessCache != null)
+			fitnessCache.put(rule.getAntecedent(), fitness, rule.getConsequent(), rule.getCoverage(columnarDataset));
+		
+		individual.setFitness(new SimpleValueFitness(fitness));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	
+	public Comparator<IFitness> getComparator() 
+	{		
+		return comparator;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	
+	protected int numberOfInstances()
+	{
+		return columnarDataset == null ? 0 : columnarDataset.numberOfInstances();
+	}
+	
+	// ///////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Private methods
+	// ///////////////////////////////////////////////////////////////
+	
+	/**
+	 * Evaluates the individual on the sampled instances
+	 * 
+	 * @param individual Individual to evaluate
+	 * @param rule the rule of the individual
+	 */
+	
+	private void evaluateSample(IIndividual individual, CrispRule rule)
+	{
+		int[] sample = this.sample;
+		
+		InstanceBitSet positives = columnarDataset.getClassBitSet(classifiedClass);
+		
+		int tp = 0, fp = 0, numPositives = 0;
+		
+		for(int i : sample)
+		{
+			boolean positive = positives.get(i);
+			
+			if(positive)
+				numPositives++;
+			
+			if(rule.matches(columnarDataset, i))
+			{
+				if(positive)
 					tp++;
 				else
 					fp++;
 			}
-			else
-			{
-				if (value != classifiedClass)
-					tn++;
-				else
-					fn++;
-			}
 		}
 		
-		double fitness;
+		int fn = numPositives - tp;
+		int tn = sample.length - numPositives - fp;
+		
+		individual.setFitness(new SimpleValueFitness(fitness(tp, fp, tn, fn)));
+	}
+	
+	/**
+	 * Computes the fitness of a confusion matrix
+	 * 
+	 * @param tp true positives
+	 * @param fp false positives
+	 * @param tn true negatives
+	 * @param fn false negatives
+	 * @return the fitness
+	 */
+	
+	private double fitness(int tp, int fp, int tn, int fn)
+	{
 		double se, sp;
 		
 	   	if(tp + fn == 0)
@@ -224,18 +419,6 @@ public class GAEvaluator extends AbstractParallelEvaluator implements IConfigure
 		else
 			sp = (double) tn / (tn + w2*fp);
 
-	    // Set the fitness to the individual
-		fitness = se * sp;
-		
-		individual.setFitness(new SimpleValueFitness(fitness));
+		return se * sp;
 	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	
-	public Comparator<IFitness> getComparator() 
-	{		
-		return comparator;
-	}	
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package net.sf.jclec.problem.classification.algorithm.ga;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import net.sf.jclec.problem.classification.blocks.RandomConstantOfContinuousValues;
 import net.sf.jclec.problem.classification.blocks.RandomConstantOfDiscreteValues;
 import net.sf.jclec.syntaxtree.IMutateSyntaxTree;
@@ -9,6 +12,18 @@ import net.sf.jclec.syntaxtree.SyntaxTreeSchema;
 import net.sf.jclec.syntaxtree.TerminalNode;
 import net.sf.jclec.util.random.IRandGen;
 
+/**
+ * Mutator of the GA rules.<p/>
+ *
+ * A random node of the parent is mutated. A non terminal node gets a new random branch
+ * and a terminal node is replaced by a compatible one: the opposite comparison operator,
+ * a new random constant, etc.
+ *
+ * The nodes are never modified once they are in a tree, so the son shares the nodes of the
+ * parent outside the mutated branch instead of copying them. The operators are identified by
+ * the id of their symbol, resolved once for the terminals of the schema.
+ *
+ */
 
 public class GAMutator implements IMutateSyntaxTree
 {
@@ -20,6 +35,34 @@ public class GAMutator implements IMutateSyntaxTree
 	
 	private static final long serialVersionUID = -2706522794304044852L;
 
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------------- Constants
+	/////////////////////////////////////////////////////////////////
+	
+	/** Symbols of the operators, indexed by operator id */
+	
+	private static final String [] OPERATORS = {"=", "!=", "<", "<=", ">", ">=", "AND", "NOT", "IN", "OUT"};
+	
+	/** Operator ids */
+	
+	private static final int EQUAL = 0, NOT_EQUAL = 1, LESS = 2, LESS_OR_EQUAL = 3, GREATER = 4, GREATER_OR_EQUAL = 5, AND = 6, NOT = 7, IN = 8, OUT = 9;
+	
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------- Internal variables
+	/////////////////////////////////////////////////////////////////
+	
+	/** Schema of the operator ids and terminals */
+	
+	private transient SyntaxTreeSchema operatorsSchema;
+	
+	/** Operator id of each terminal symbol of the schema that is an operator */
+	
+	private transient Map<String, Integer> operatorIds;
+	
+	/** Terminal of the schema of each operator id, null if the schema does not have it */
+	
+	private transient TerminalNode [] operatorTerminals;
+
 	/////////////////////////////////////////////////////////////////
 	// ------------------------------------------------- Constructors
 	/////////////////////////////////////////////////////////////////
@@ -51,8 +94,9 @@ public class GAMutator implements IMutateSyntaxTree
 
 			int p_branchEnd = endOfBranch(parent, p_branchStart);
 
+			// The nodes are shared with the parent
 			for (int i = 0; i < p_branchStart; i++)
-				son.addNode(parent.getNode(i).copy());
+				son.addNode(parent.getNode(i));
 
 			// Set branch depth (to check maximum size)
 			int p_branchDepth = parent.derivSize();
@@ -69,7 +113,7 @@ public class GAMutator implements IMutateSyntaxTree
 
 			schema.fillSyntaxBranch(son, selectedSymbol.getSymbol(), nOfDer, randgen);
 			for (int i = p_branchEnd + 1; i < parent.size(); i++)
-				son.addNode(parent.getNode(i).copy());
+				son.addNode(parent.getNode(i));
 
 		} 
 		else {
@@ -81,7 +125,7 @@ public class GAMutator implements IMutateSyntaxTree
 				p_branchStart--;
 			
 			for (int i = 0; i < p_branchStart; i++) 
-				son.addNode(parent.getNode(i).copy());	
+				son.addNode(parent.getNode(i));	
 			
 			if(node != null)
 				son.addNode(node);
@@ -90,7 +134,7 @@ public class GAMutator implements IMutateSyntaxTree
 				p_branchStart++;
 			
 			for (int i = p_branchStart + 1; i < parent.size(); i++)
-				son.addNode(parent.getNode(i).copy());
+				son.addNode(parent.getNode(i));
 		}
 
 		return son;
@@ -132,60 +176,55 @@ public class GAMutator implements IMutateSyntaxTree
 	 */
 	protected TerminalNode selectOtherTerminalNode(TerminalNode symbol, SyntaxTreeSchema schema, IRandGen randgen) 
 	{
-		if (symbol.getSymbol().equalsIgnoreCase("="))
-			return schema.getTerminal("!=");
-
-		if (symbol.getSymbol().equalsIgnoreCase("!="))
-			return schema.getTerminal("=");
-
-		if (symbol.getSymbol().equalsIgnoreCase("<")) 
-		{
-			if (randgen.raw() < 0.3)
-				return schema.getTerminal(">");
-			if (randgen.raw() < 0.6)
-				return schema.getTerminal(">=");
-
-			return schema.getTerminal("<=");
-		}
-		if (symbol.getSymbol().equalsIgnoreCase("<=")) 
-		{
-			if (randgen.raw() < 0.3)
-				return schema.getTerminal(">");
-			if (randgen.raw() < 0.6)
-				return schema.getTerminal(">=");
-
-			return schema.getTerminal("<");
-		}
-		if (symbol.getSymbol().equalsIgnoreCase(">")) 
-		{
-			if (randgen.raw() < 0.3)
-				return schema.getTerminal("<");
-			if (randgen.raw() < 0.6)
-				return schema.getTerminal(">=");
-
-			return schema.getTerminal("<=");
-		}
-		if (symbol.getSymbol().equalsIgnoreCase(">=")) 
-		{
-			if (randgen.raw() < 0.3)
-				return schema.getTerminal(">");
-			if (randgen.raw() < 0.6)
-				return schema.getTerminal("<");
-
-			return schema.getTerminal("<=");
-		}
-
-		if (symbol.getSymbol().equalsIgnoreCase("AND"))
-			return schema.getTerminal("AND");
-
-		if (symbol.getSymbol().equalsIgnoreCase("NOT"))
-			return null;
+		if (schema != operatorsSchema)
+			setOperators(schema);
 		
-		if (symbol.getSymbol().equalsIgnoreCase("IN"))
-			return schema.getTerminal("OUT");
+		Integer operatorId = operatorIds.get(symbol.getSymbol());
 		
-		if (symbol.getSymbol().equalsIgnoreCase("OUT"))
-			return schema.getTerminal("IN");
+		if (operatorId != null)
+		{
+			TerminalNode [] terminals = operatorTerminals;
+			
+			switch (operatorId)
+			{
+				case EQUAL:
+					return terminals[NOT_EQUAL];
+				case NOT_EQUAL:
+					return terminals[EQUAL];
+				case LESS:
+					if (randgen.raw() < 0.3)
+						return terminals[GREATER];
+					if (randgen.raw() < 0.6)
+						return terminals[GREATER_OR_EQUAL];
+					return terminals[LESS_OR_EQUAL];
+				case LESS_OR_EQUAL:
+					if (randgen.raw() < 0.3)
+						return terminals[GREATER];
+					if (randgen.raw() < 0.6)
+						return terminals[GREATER_OR_EQUAL];
+					return terminals[LESS];
+				case GREATER:
+					if (randgen.raw() < 0.3)
+						return terminals[LESS];
+					if (randgen.raw() < 0.6)
+						return terminals[GREATER_OR_EQUAL];
+					return terminals[LESS_OR_EQUAL];
+				case GREATER_OR_EQUAL:
+					if (randgen.raw() < 0.3)
+						return terminals[GREATER];
+					if (randgen.raw() < 0.6)
+						return terminals[LESS];
+					return terminals[LESS_OR_EQUAL];
+				case AND:
+					return terminals[AND];
+				case NOT:
+					return null;
+				case IN:
+					return terminals[OUT];
+				case OUT:
+					return terminals[IN];
+			}
+		}
 
 		if (symbol.getCode() instanceof RandomConstantOfContinuousValues) 
 		{
@@ -209,4 +248,30 @@ public class GAMutator implements IMutateSyntaxTree
 
 		return symbol;
 	}
+	
+	/**
+	 * Resolves the operator ids of the terminal symbols of a schema and its operator terminals
+	 * 
+	 * @param schema SyntaxTreeSchema
+	 */
+	private void setOperators(SyntaxTreeSchema schema)
+	{
+		Map<String, Integer> operatorIds = new HashMap<String, Integer>();
+		TerminalNode [] operatorTerminals = new TerminalNode[OPERATORS.length];
+		
+		for (TerminalNode terminal : schema.getTerminals())
+			for (int i = 0; i < OPERATORS.length; i++)
+				if (terminal.getSymbol().equalsIgnoreCase(OPERATORS[i]))
+				{
+					operatorIds.put(terminal.getSymbol(), i);
+					break;
+				}
+		
+		for (int i = 0; i < OPERATORS.length; i++)
+			operatorTerminals[i] = schema.getTerminal(OPERATORS[i]);
+		
+		this.operatorIds = operatorIds;
+		this.operatorTerminals = operatorTerminals;
+		this.operatorsSchema = schema;
+	}
 }
\ No newline at end of file
@@ -1,17 +1,30 @@
 package net.sf.jclec.problem.classification.algorithm.ge;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sf.jclec.IConfigure;
+import net.sf.jclec.IFitness;
 import net.sf.jclec.IIndividual;
 import net.sf.jclec.IRecombinator;
 import net.sf.jclec.ISelector;
 import net.sf.jclec.base.FilteredRecombinator;
+import net.sf.jclec.fitness.SimpleValueFitness;
 import net.sf.jclec.problem.classification.base.ClassificationAlgorithm;
 import net.sf.jclec.problem.classification.base.Rule;
+import net.sf.jclec.problem.classification.base.RuleBase;
 import net.sf.jclec.problem.classification.crisprule.CrispRuleBase;
 import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeSpecies;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
@@ -44,6 +57,34 @@ public class GEAlgorithm extends ClassificationAlgorithm
 	
 	private double copyProb;
 	
+	/** Number of instances of the sample used to evaluate the offspring, 0 to use the whole training set */
+	
+	private int sampleSize;
+	
+	/** Proportion of the population re-evaluated on the whole training set in sampled mode */
+	
+	private double finalistsProb;
+	
+	/** Evolve the population asynchronously in steady state, without generations */
+	
+	private boolean steadyState;
+	
+	/** Offspring of the last generation that were not re-evaluated on the whole training set */
+	
+	private transient List<IIndividual> rejected;
+	
+	/** Population sorted from the best individual in steady state mode, also used as lock */
+	
+	private transient List<IIndividual> population;
+	
+	/** Offspring that can still be created in steady state mode */
+	
+	private transient int remainingEvaluations;
+	
+	/** Offspring inserted in the population in steady state mode */
+	
+	private transient int insertions;
+	
 	/////////////////////////////////////////////////////////////////
 	// ------------------------------------------------- Constructors
 	/////////////////////////////////////////////////////////////////
@@ -133,6 +174,87 @@ public class GEAlgorithm extends ClassificationAlgorithm
 		this.copyProb = copyProb;
 	}
 	
+	/**
+	 * Access to "sampleSize" property.
+	 * 
+	 * @return Number of instances of the sample, 0 if the whole training set is used
+	 */
+	
+	public int getSampleSize() 
+	{
+		return sampleSize;
+	}
+
+	/**
+	 * Set the "sampleSize" property.
+	 * 
+	 * @param sampleSize number of instances of the sample, 0 to use the whole training set
+	 */
+	
+	public void setSampleSize(int sampleSize) 
+	{
+		this.sampleSize = sampleSize;
+	}
+	
+	/**
+	 * Access to "finalistsProb" property.
+	 * 
+	 * @return Current proportion of finalists
+	 */
+	
+	public double getFinalistsProb() 
+	{
+		return finalistsProb;
+	}
+
+	/**
+	 * Set the "finalistsProb" property.
+	 * 
+	 * @param finalistsProb the proportion of the population re-evaluated on the whole training set
+	 */
+	
+	public void setFinalistsProb(double finalistsProb) 
+	{
+		this.finalistsProb = finalistsProb;
+	}
+	
+	/**
+	 * Access to "steadyState" property.
+	 * 
+	 * @return true if the population evolves asynchronously in steady state
+	 */
+	
+	public boolean isSteadyState() 
+	{
+		return steadyState;
+	}
+
+	/**
+	 * Set the "steadyState" property.
+	 * 
+	 * @param steadyState evolve the population asynchronously in steady state
+	 */
+	
+	public void setSteadyState(boolean steadyState) 
+	{
+		this.steadyState = steadyState;
+	}
+	
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Creates the rule base that keeps the best rule of each class
+	 * 
+	 * @return a crisp rule base
+	 */
+	
+	protected RuleBase createRuleBase()
+	{
+		return new CrispRuleBase();
+	}
+	
 	/////////////////////////////////////////////////////////////////
 	// ---------------------------------------------- Private methods
 	/////////////////////////////////////////////////////////////////
@@ -148,6 +270,221 @@ public class GEAlgorithm extends ClassificationAlgorithm
 		((FilteredRecombinator) this.recombinator).setRecProb(recProb);
 	}	
 	
+	/**
+	 * Evaluates the new individuals on the sample and re-evaluates the best of them on the
+	 * whole training set. The rest of the new individuals get a fitness of 0, so they
+	 * are ranked after the finalists.
+	 * 
+	 * @param offspring the individuals of the generation
+	 */
+	
+	private void evaluateOnSample(List<IIndividual> offspring)
+	{
+		List<IIndividual> sampled = new ArrayList<IIndividual>();
+		
+		// The individuals not modified by the recombinator keep their fitness
+		for (IIndividual individual : offspring)
+			if (individual.getFitness() == null)
+				sampled.add(individual);
+		
+		evaluator.evaluate(sampled);
+		
+		List<IIndividual> ranked = bettersSelector.select(sampled);
+		
+		int finalistsSize = Math.min(ranked.size(), (int) Math.round(populationSize * finalistsProb));
+		
+		List<IIndividual> finalists = new ArrayList<IIndividual>(ranked.subList(0, finalistsSize));
+		rejected = new ArrayList<IIndividual>(ranked.subList(finalistsSize, ranked.size()));
+		
+		for (IIndividual individual : rejected)
+			individual.setFitness(new SimpleValueFitness(0.0));
+		
+		// Evaluate the finalists on the whole training set
+		((GEEvaluator) evaluator).setSample(null);
+		
+		for (IIndividual individual : finalists)
+			individual.setFitness(null);
+		
+		evaluator.evaluate(finalists);
+	}
+	
+	/**
+	 * Evolves the population in steady state mode until population-size x max-of-generations
+	 * offspring have been evaluated. Each worker thread selects two parents, recombines them,
+	 * evaluates the offspring without holding the lock of the population and inserts them
+	 * in order, so no thread waits for the slowest evaluation of a generation. The best rule
+	 * of each class and the classifier are updated with every insertion, and the listeners
+	 * are notified of a completed iteration every population-size insertions.
+	 * 
+	 * The order in which the workers take the lock varies, so the runs with more than one
+	 * thread are not reproducible.
+	 */
+	
+	private void doSteadyState()
+	{
+		population = bettersSelector.select(bset);
+		remainingEvaluations = populationSize * maxOfGenerations;
+		insertions = 0;
+		
+		eset = new ArrayList<IIndividual>();
+		
+		for (IIndividual individual : population)
+			updateElite(individual);
+		
+		int numberOfThreads = ((GEEvaluator) evaluator).getNumberOfThreads();
+		
+		if (numberOfThreads <= 0)
+			numberOfThreads = Runtime.getRuntime().availableProcessors();
+		
+		ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		
+		for (int i = 0; i < numberOfThreads; i++)
+		{
+			futures.add(pool.submit(new Runnable() {
+				public void run() {
+					evolveSteadyState();
+				}
+			}));
+		}
+		
+		pool.shutdown();
+		
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Steady state evolution interrupted", e);
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException("Error in the steady state evolution", e.getCause());
+		}
+		
+		bset = population;
+		population = null;
+		
+		generation = maxOfGenerations;
+		state = FINISHED;
+	}
+	
+	/**
+	 * Work done by each thread in steady state mode
+	 */
+	
+	private void evolveSteadyState()
+	{
+		GEEvaluator evaluator = (GEEvaluator) this.evaluator;
+		
+		while (true)
+		{
+			List<IIndividual> offspring;
+			
+			// The selector and the recombinator share the random generator of the algorithm
+			synchronized (population)
+			{
+				if (remainingEvaluations <= 0)
+					return;
+				
+				offspring = new ArrayList<IIndividual>(recombinator.recombine(parentsSelector.select(population, 2)));
+				remainingEvaluations -= offspring.size();
+			}
+			
+			for (IIndividual individual : offspring)
+				evaluator.evaluateConcurrently(individual);
+			
+			synchronized (population)
+			{
+				for (IIndividual individual : offspring)
+					insert(individual);
+			}
+		}
+	}
+	
+	/**
+	 * Inserts an individual in the sorted population, removing the worst one if the population
+	 * exceeds its size, and updates the best rule of its class. Every population-size insertions
+	 * the generation is advanced and the listeners are notified.
+	 * 
+	 * @param individual the evaluated individual
+	 */
+	
+	private void insert(IIndividual individual)
+	{
+		Comparator<IFitness> comparator = evaluator.getComparator();
+		
+		int position = population.size();
+		
+		// Ties are placed after the individuals already in the population
+		while (position > 0 && comparator.compare(population.get(position - 1).getFitness(), individual.getFitness()) < 0)
+			position--;
+		
+		population.add(position, individual);
+		
+		if (population.size() > populationSize)
+			population.remove(population.size() - 1);
+		
+		updateElite(individual);
+		
+		// The last iteration is notified when the evolution finishes
+		if (++insertions % populationSize == 0 && generation + 1 < maxOfGenerations)
+		{
+			generation++;
+			bset = new ArrayList<IIndividual>(population);
+			
+			fireIterationCompleted();
+		}
+	}
+	
+	/**
+	 * Replaces the best rule of the class of an individual if the individual is better,
+	 * and sets the rules of the classifier sorted by fitness
+	 * 
+	 * @param individual the evaluated individual
+	 */
+	
+	private void updateElite(IIndividual individual)
+	{
+		Comparator<IFitness> comparator = evaluator.getComparator();
+		double consequent = ((SyntaxTreeRuleIndividual) individual).getPhenotype().getConsequent();
+		
+		int index = 0;
+		
+		while (index < eset.size() && ((SyntaxTreeRuleIndividual) eset.get(index)).getPhenotype().getConsequent() != consequent)
+			index++;
+		
+		if (index < eset.size())
+		{
+			if (comparator.compare(individual.getFitness(), eset.get(index).getFitness()) <= 0)
+				return;
+			
+			eset.remove(index);
+		}
+		
+		// The elite is kept sorted from the best rule, as the rules of the classifier
+		IIndividual elite = individual.copy();
+		
+		int position = 0;
+		
+		while (position < eset.size() && comparator.compare(eset.get(position).getFitness(), elite.getFitness()) > 0)
+			position++;
+		
+		eset.add(position, elite);
+		
+		List<Rule> classificationRule = new ArrayList<Rule>();
+		
+		for (IIndividual ind : eset)
+		{
+			Rule rule = ((SyntaxTreeRuleIndividual) ind).getPhenotype();
+			rule.setFitness(ind.getFitness());
+			
+			classificationRule.add(rule);
+		}
+		
+		((RuleBase) classifier).setClassificationRules(classificationRule);
+	}
+	
 	/**
 	 * Set the parent selector settings
 	 * 
@@ -239,8 +576,11 @@ public class GEAlgorithm extends ClassificationAlgorithm
 
 	public void configure(Configuration settings)
 	{
-		settings.addProperty("species[@type]", "net.sf.jclec.problem.classification.algorithm.ge.GESyntaxTreeSpecies");
-		settings.addProperty("evaluator[@type]", "net.sf.jclec.problem.classification.algorithm.ge.GEEvaluator");
+		// Subclasses may establish their own species and evaluator
+		if(!settings.containsKey("species[@type]"))
+			settings.addProperty("species[@type]", "net.sf.jclec.problem.classification.algorithm.ge.GESyntaxTreeSpecies");
+		if(!settings.containsKey("evaluator[@type]"))
+			settings.addProperty("evaluator[@type]", "net.sf.jclec.problem.classification.algorithm.ge.GEEvaluator");
 		settings.addProperty("provider[@type]", "net.sf.jclec.syntaxtree.SyntaxTreeCreator");
 		settings.addProperty("parents-selector[@type]", "net.sf.jclec.selector.TournamentSelector");
 		
@@ -251,19 +591,22 @@ public class GEAlgorithm extends ClassificationAlgorithm
 		//Call super.configure() method
 		super.configure(settings);
 		
-		classifier = new CrispRuleBase();
+		classifier = createRuleBase();
 		
 		// Establishes the metadata for the species
-		((GESyntaxTreeSpecies) species).setMetadata(getTrainSet().getMetadata());
+		((SyntaxTreeSpecies) species).setMetadata(getTrainSet().getMetadata());
 		
 		//Get max-tree-depth
 		int maxDerivSize = settings.getInt("max-deriv-size");
-		((GESyntaxTreeSpecies) species).setGrammar();
-		((GESyntaxTreeSpecies) species).setMaxDerivSize(maxDerivSize);
+		((SyntaxTreeSpecies) species).setGrammar();
+		((SyntaxTreeSpecies) species).setMaxDerivSize(maxDerivSize);
 		
 		// Establishes the training set for evaluating
 		((GEEvaluator) evaluator).setDataset(getTrainSet());
 		((GEEvaluator) evaluator).setMaxDerivSize(maxDerivSize);
+		((GEEvaluator) evaluator).setCacheSize(settings.getInt("cache-size", 10000));
+		((GEEvaluator) evaluator).setNumberOfThreads(settings.getInt("number-of-threads", 0));
+		((GEEvaluator) evaluator).setChunkSize(settings.getInt("chunk-size", 4));
 		
 		// Parents selector
 		setParentsSelectorSetting(settings);
@@ -274,6 +617,32 @@ public class GEAlgorithm extends ClassificationAlgorithm
 		// Set copy probability
 		double copyProb = settings.getDouble("copy-prob",0.1);
 		setCopyProb(copyProb);
+		
+		// Set sampled evaluation
+		int sampleSize = settings.getInt("sample-size",0);
+		setSampleSize(sampleSize);
+		
+		double finalistsProb = settings.getDouble("finalists-prob",0.25);
+		setFinalistsProb(finalistsProb);
+		
+		// Set steady state evolution
+		boolean steadyState = settings.getBoolean("steady-state",false);
+		setSteadyState(steadyState);
+		
+		// The steady state evolution has no generations to replace, sample, copy or checkpoint
+		if (steadyState)
+		{
+			if (sampleSize > 0)
+				throw new ConfigurationRuntimeException("The sampled evaluation cannot be used in steady state mode");
+			if (getCheckpointFrequency() > 0)
+				throw new ConfigurationRuntimeException("The checkpoints cannot be used in steady state mode");
+			if (settings.containsKey("copy-prob") && copyProb > 0)
+				System.out.println("The copy probability is ignored in steady state mode");
+			if (isRemoveDuplicates())
+				throw new ConfigurationRuntimeException("The duplicate elimination cannot be used in steady state mode");
+			if (isRemoveEquivalentRules())
+				throw new ConfigurationRuntimeException("The equivalent rules elimination cannot be used in steady state mode");
+		}
 	}
 
 	/////////////////////////////////////////////////////////////////
@@ -302,6 +671,15 @@ public class GEAlgorithm extends ClassificationAlgorithm
 	// ---------------------------- Overwriting BaseAlgorithm methods
 	/////////////////////////////////////////////////////////////////
 	
+	@Override
+	protected void doIterate()
+	{
+		if (steadyState)
+			doSteadyState();
+		else
+			super.doIterate();
+	}
+	
 	@Override
 	protected void doSelection() 
 	{
@@ -316,8 +694,18 @@ public class GEAlgorithm extends ClassificationAlgorithm
 		cset = recombinator.recombine(pset);
 		cset.addAll(recombinator.getSterile());
 		
+		// Replace the clones before they are evaluated
+		cset = removeDuplicates(cset);
+		
+		// The new individuals are ranked on a new stratified sample of the training set
+		if (sampleSize > 0)
+			((GEEvaluator) evaluator).setSample(((GEEvaluator) evaluator).getColumnarDataset().stratifiedSample(sampleSize, randgen));
+		
 		// Evaluate all new individuals
-		evaluator.evaluate(cset);
+		if (((GEEvaluator) evaluator).getSample() != null)
+			evaluateOnSample(cset);
+		else
+			evaluator.evaluate(cset);
 	}
 	
 	@Override
@@ -337,6 +725,10 @@ public class GEAlgorithm extends ClassificationAlgorithm
 		List<Rule> classificationRule = new ArrayList<Rule>();
 		List<Double> classes = new ArrayList<Double>();
 		
+		// Collapse the rules that cover the same instances
+		ColumnarDataSet dataset = ((GEEvaluator) evaluator).getColumnarDataset();
+		cset = removeEquivalentRules(cset, dataset);
+		
 		// We leave space for the best rules per class that existed in the previous population
 		if(cset.size() + getTrainSet().getMetadata().numberOfClasses() > populationSize)
 			bset = bettersSelector.select(cset, populationSize-getTrainSet().getMetadata().numberOfClasses());
@@ -344,14 +736,32 @@ public class GEAlgorithm extends ClassificationAlgorithm
 			bset = bettersSelector.select(cset);
 		
 		bset.addAll(eset);
+		bset = removeEquivalentRules(bset, dataset);
 		
 		eset = new ArrayList<IIndividual>();
 		
+		// The individuals that were not finalists have not been evaluated on the whole training set
+		List<IIndividual> ranked = bset;
+		
+		if (rejected != null)
+		{
+			Set<IIndividual> excluded = Collections.newSetFromMap(new IdentityHashMap<IIndividual, Boolean>());
+			excluded.addAll(rejected);
+			
+			ranked = new ArrayList<IIndividual>();
+			
+			for(IIndividual individual : bset)
+				if(!excluded.contains(individual))
+					ranked.add(individual);
+			
+			rejected = null;
+		}
+		
 		//Select the best individual for each class
-		for(int i=0; i < bset.size() && classes.size() != getTrainSet().getMetadata().numberOfClasses(); i++)
+		for(int i=0; i < ranked.size() && classes.size() != getTrainSet().getMetadata().numberOfClasses(); i++)
 		{
-			Rule rule = (Rule) ((SyntaxTreeRuleIndividual) bset.get(i)).getPhenotype();
-			rule.setFitness(bset.get(i).getFitness());
+			Rule rule = (Rule) ((SyntaxTreeRuleIndividual) ranked.get(i)).getPhenotype();
+			rule.setFitness(ranked.get(i).getFitness());
 			
 			if(!classes.contains(rule.getConsequent()))
 			{
@@ -372,11 +782,11 @@ public class GEAlgorithm extends ClassificationAlgorithm
 				
 				classes.add(rule.getConsequent());
 				
-				eset.add(bset.get(i).copy());
+				eset.add(ranked.get(i).copy());
 			}
 		}
 		
-		((CrispRuleBase) classifier).setClassificationRules(classificationRule); 
+		((RuleBase) classifier).setClassificationRules(classificationRule); 
 	
 		cset = pset = rset = null;
 	}
@@ -1,21 +1,23 @@
 package net.sf.jclec.problem.classification.algorithm.ge;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
 import net.sf.jclec.IFitness;
 import net.sf.jclec.IIndividual;
-import net.sf.jclec.base.AbstractParallelEvaluator;
 import net.sf.jclec.fitness.SimpleValueFitness;
 import net.sf.jclec.fitness.ValueFitnessComparator;
-import net.sf.jclec.problem.classification.base.Rule;
+import net.sf.jclec.problem.classification.ICachedEvaluator;
+import net.sf.jclec.problem.classification.base.AbstractForkJoinEvaluator;
+import net.sf.jclec.problem.classification.base.FitnessCache;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
 import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
 import net.sf.jclec.problem.util.dataset.IDataset;
-import net.sf.jclec.problem.util.dataset.instance.IInstance;
-import net.sf.jclec.problem.util.dataset.attribute.CategoricalAttribute;
-import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
 
 
-public class GEEvaluator extends AbstractParallelEvaluator
+public class GEEvaluator extends AbstractForkJoinEvaluator implements ICachedEvaluator
 {
 	/////////////////////////////////////////////////////////////////
 	// --------------------------------------- Serialization constant
@@ -33,10 +35,34 @@ public class GEEvaluator extends AbstractParallelEvaluator
 	
 	protected IDataset dataset;
 	
+	/** Columnar view of the train dataset, scanned by the evaluation */
+	
+	protected ColumnarDataSet columnarDataset;
+	
+	/** Fitness cache, null if caching is disabled */
+	
+	protected FitnessCache fitnessCache;
+	
 	/** Maximize the fitness function */
 	
 	private boolean maximize = true;
 
+	/** Instances used to evaluate the individuals, null to use the whole dataset */
+	
+	protected int[] sample;
+	
+	/** Number of instances of each class in the dataset */
+	
+	protected transient int[] classTotals;
+	
+	/** Number of instances of each class in the sample */
+	
+	protected transient int[] sampleClassTotals;
+	
+	/** Number of covered instances of each class, reused by every evaluation thread */
+	
+	private static final ThreadLocal<int[]> COVERED_COUNTS = new ThreadLocal<int[]>();
+	
 	/** Maximum derivation size */
 	
 	protected int maxDerivSize;
@@ -73,6 +99,17 @@ public class GEEvaluator extends AbstractParallelEvaluator
 		return dataset;
 	}
 	
+	/**
+	 * Get the columnar view of the dataset
+	 * 
+	 * @return columnar dataset
+	 */
+	
+	public ColumnarDataSet getColumnarDataset()
+	{
+		return columnarDataset;
+	}
+	
 	/**
 	 * Set the dataset
 	 * 
@@ -82,6 +119,65 @@ public class GEEvaluator extends AbstractParallelEvaluator
 	public void setDataset(IDataset dataset)
 	{
 		this.dataset = dataset;
+		
+		if(dataset instanceof ColumnarDataSet)
+			this.columnarDataset = (ColumnarDataSet) dataset;
+		else
+			this.columnarDataset = new ColumnarDataSet(dataset);
+		
+		this.sample = null;
+		this.sampleClassTotals = null;
+		this.classTotals = null;
+		
+		if(fitnessCache != null)
+			fitnessCache.clear();
+	}
+	
+	/**
+	 * Get the sample of instances used to evaluate the individuals
+	 * 
+	 * @return the indexes of the sampled instances, null if the whole dataset is used
+	 */
+	
+	public int[] getSample()
+	{
+		return sample;
+	}
+	
+	/**
+	 * Set the sample of instances used to evaluate the individuals. The fitness
+	 * computed on a sample is not cached.
+	 * 
+	 * @param sample the indexes of the sampled instances, null to use the whole dataset
+	 */
+	
+	public void setSample(int[] sample)
+	{
+		this.sampleClassTotals = sample == null ? null : countClasses(sample);
+		this.sample = sample;
+	}
+	
+	/**
+	 * Set the maximum number of entries of the fitness cache
+	 * 
+	 * @param cacheSize cache capacity, 0 disables the cache
+	 */
+	
+	public void setCacheSize(int cacheSize)
+	{
+		if(cacheSize > 0)
+			this.fitnessCache = new FitnessCache(cacheSize);
+		else
+			this.fitnessCache = null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	
+	public FitnessCache getFitnessCache()
+	{
+		return fitnessCache;
 	}
 	
 	/**
@@ -116,57 +212,100 @@ public class GEEvaluator extends AbstractParallelEvaluator
 
 	protected void evaluate(IIndividual individual) 
 	{
-		Rule rule = (Rule) ((SyntaxTreeRuleIndividual) individual).getPhenotype();
+		CrispRule rule = (CrispRule) ((SyntaxTreeRuleIndividual) individual).getPhenotype();
+		
+		int[] sample = this.sample;
 		
-		int[] tp, fp, tn, fn;
+		// Reuse the evaluation of an equal antecedent
+		if(fitnessCache != null && sample == null)
+		{
+			FitnessCache.Entry entry = fitnessCache.get(rule.getAntecedent());
+			
+			if(entry != null)
+			{
+				rule.setConsequent(entry.getConsequent());
+				rule.setCoverage(columnarDataset, entry.getCoverage());
+				individual.setFitness(new SimpleValueFitness(entry.getFitness()));
+				return;
+			}
+		}
 		
-		IMetadata metadata = getDataset().getMetadata();
-		CategoricalAttribute catAttribute = (CategoricalAttribute) metadata.getAttribute(metadata.getClassIndex()); 
-		int numClasses = catAttribute.getCategories().size();
+		int[] sampleTotals = this.sampleClassTotals;
+		int[] totals, tp;
+		int numClasses, numInstances, numCovered = 0;
 		
-		tp = new int [numClasses];
-		tn = new int [numClasses];
-		fn = new int [numClasses];
-		fp = new int [numClasses];
+		InstanceBitSet covered = null;
 		
-		//Calculate the confusion matrix for each class
-		for(IInstance instance : dataset.getInstances())
+		if(sample != null)
 		{
-			if((Boolean) rule.covers(instance))
-			{		
-				double value = instance.getValue(metadata.getClassIndex());
-				tp[(int) value]++;
-				for(int i=0; i<numClasses; i++)
-					if(((int) value) != i)
-						fp[i]++;
+			//Count the covered instances of each class on the sample
+			totals = sampleTotals;
+			numClasses = totals.length;
+			numInstances = sample.length;
+			tp = coveredCounts(numClasses);
+			
+			int[] labels = columnarDataset.getClassLabels();
+			
+			for(int i : sample)
+			{
+				if(rule.matches(columnarDataset, i))
+				{
+					numCovered++;
+					
+					if(labels[i] >= 0 && labels[i] < numClasses)
+						tp[labels[i]]++;
+				}
+			}
+		}
+		else
+		{
+			//Count the covered instances of each class
+			totals = getClassTotals();
+			numClasses = totals.length;
+			numInstances = columnarDataset.numberOfInstances();
+			tp = coveredCounts(numClasses);
+			
+			if(isDataParallel() && !rule.hasCoverage(columnarDataset))
+			{
+				// The instances are split among the threads
+				int[] counts = countCoverage(rule, columnarDataset, numClasses);
+				
+				covered = rule.getCoverage(columnarDataset);
+				numCovered = counts[numClasses];
+				
+				System.arraycopy(counts, 0, tp, 0, numClasses);
 			}
 			else
-			{	
-				double value = instance.getValue(metadata.getClassIndex());
-					
-				fn[(int) value]++;
+			{
+				covered = rule.getCoverage(columnarDataset);
+				numCovered = covered.cardinality();
+				
 				for(int i=0; i<numClasses; i++)
-					if(((int) value) != i)
-						tn[i]++;
+					tp[i] = covered.andCardinality(columnarDataset.getClassBitSet(i));
 			}
 		}
 					
 		//Calculate the fitness for each class
 		double se = -1, sp = 1, sy;
 		double seAux, spAux;
+		int fp, tn, fn;
 		int bestClass = -1;
 				
 		for(int i=0; i<numClasses; i++)
 		{
-			if(tp[i]+fn[i] == 0)
+			fp = numCovered - tp[i];
+			fn = totals[i] - tp[i];
+			tn = numInstances - numCovered - fn;
+			
+			if(tp[i]+fn == 0)
 				seAux = 1;
 			else
-				seAux = (double) tp[i]/(tp[i]+fn[i]);
+				seAux = (double) tp[i]/(tp[i]+fn);
 			
-			if(tn[i]+fp[i] == 0)
+			if(tn+fp == 0)
 				spAux = 1;
 			else
-				spAux = (double) tn[i]/(tn[i]+fp[i]);
+				spAux = (double) tn/(tn+fp);
 			
 			if(seAux*spAux == se*sp)
 				bestClass = i;
@@ -186,6 +325,9 @@ public class GEEvaluator extends AbstractParallelEvaluator
 		
 		sy = (getMaxDerivSize() - 0.5*numnodes -0.5)/(getMaxDerivSize()-1);
 		
+		if(fitnessCache != null && covered != null)
+			fitnessCache.put(rule.getAntecedent(), se*sp*sy, bestClass, covered);
+		
 		individual.setFitness(new SimpleValueFitness(se*sp*sy));
 	}
 	
@@ -197,4 +339,84 @@ public class GEEvaluator extends AbstractParallelEvaluator
 	{		
 		return comparator;
 	}
+	
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	
+	protected int numberOfInstances()
+	{
+		return columnarDataset == null ? 0 : columnarDataset.numberOfInstances();
+	}
+	
+	/**
+	 * Obtains the number of instances of each class in the dataset,
+	 * counted once per dataset
+	 * 
+	 * @return the number of instances of each class
+	 */
+	
+	protected synchronized int[] getClassTotals()
+	{
+		if(classTotals == null)
+		{
+			int[] totals = new int [dataset.getMetadata().numberOfClasses()];
+			
+			for(int i=0; i<totals.length; i++)
+				totals[i] = columnarDataset.getClassBitSet(i).cardinality();
+			
+			classTotals = totals;
+		}
+		
+		return classTotals;
+	}
+	
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Counts the instances of each class in a sample
+	 * 
+	 * @param sample the indexes of the sampled instances
+	 * @return the number of instances of each class
+	 */
+	
+	private int[] countClasses(int[] sample)
+	{
+		int[] totals = new int [dataset.getMetadata().numberOfClasses()];
+		int[] labels = columnarDataset.getClassLabels();
+		
+		for(int i : sample)
+			if(labels[i] >= 0 && labels[i] < totals.length)
+				totals[labels[i]]++;
+		
+		return totals;
+	}
+	
+	/**
+	 * Obtains the array of covered instances per class of the current thread, set to 0
+	 * 
+	 * @param numClasses number of classes
+	 * @return the counts of the current thread
+	 */
+	
+	private static int[] coveredCounts(int numClasses)
+	{
+		int[] counts = COVERED_COUNTS.get();
+		
+		if(counts == null || counts.length != numClasses)
+		{
+			counts = new int [numClasses];
+			COVERED_COUNTS.set(counts);
+		}
+		else
+			Arrays.fill(counts, 0);
+		
+		return counts;
+	}
 }
\ No newline at end of file
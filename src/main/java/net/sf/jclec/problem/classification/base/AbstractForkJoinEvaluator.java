@@ -0,0 +1,461 @@
+package net.sf.jclec.problem.classification.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.base.AbstractEvaluator;
+import net.sf.jclec.problem.classification.crisprule.CompiledAntecedent;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
+
+/**
+ * Evaluator that evaluates the individuals in a persistent fork/join pool.<p/>
+ *
+ * The individuals without fitness are split in chunks of at most chunkSize individuals,
+ * which are evaluated by the workers of the pool. Idle workers steal the pending chunks
+ * of the busy ones, so the load stays balanced when the cost of the rules varies.
+ *
+ * The pool is created the first time it is needed and kept for the following generations.
+ * It is shared by all the evaluators with the same number of threads, so the evaluators of
+ * the classes evolved concurrently do not multiply the threads.
+ *
+ * When there are too few individuals to keep the threads busy and the dataset has at least
+ * one block of DATA_BLOCK instances per thread, the individuals are evaluated one by one
+ * and the subclasses split the instances of each rule among the threads with countCoverage(),
+ * which reduces the partial counts of the blocks. The antecedent is compiled before the
+ * blocks are forked, and the rules that cannot be compiled are evaluated by the calling thread.
+ *
+ */
+
+public abstract class AbstractForkJoinEvaluator extends AbstractEvaluator
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = -3904521879630264174L;
+
+	/** Minimum number of instances evaluated by a task in data parallel mode, multiple of 64 */
+
+	protected static final int DATA_BLOCK = 4096;
+
+	/** Pools shared by the evaluators, by number of threads */
+
+	private static final Map<Integer, ForkJoinPool> POOLS = new HashMap<Integer, ForkJoinPool>();
+
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Properties
+	/////////////////////////////////////////////////////////////////
+
+	/** Number of threads of the pool, 0 to use one per processor */
+
+	protected int numberOfThreads;
+
+	/** Maximum number of individuals evaluated by a task */
+
+	protected int chunkSize = 4;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------- Internal variables
+	/////////////////////////////////////////////////////////////////
+
+	/** Split the instances of each rule among the threads in the current evaluation */
+
+	private transient boolean dataParallel;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Empty constructor.
+	 */
+
+	public AbstractForkJoinEvaluator()
+	{
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------- Getting and setting properties
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Get the number of threads of the pool
+	 *
+	 * @return number of threads, 0 if there is one per processor
+	 */
+
+	public int getNumberOfThreads()
+	{
+		return numberOfThreads;
+	}
+
+	/**
+	 * Set the number of threads of the pool
+	 *
+	 * @param numberOfThreads number of threads, 0 to use one per processor
+	 */
+
+	public void setNumberOfThreads(int numberOfThreads)
+	{
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * Get the maximum number of individuals evaluated by a task
+	 *
+	 * @return chunk size
+	 */
+
+	public int getChunkSize()
+	{
+		return chunkSize;
+	}
+
+	/**
+	 * Set the maximum number of individuals evaluated by a task
+	 *
+	 * @param chunkSize chunk size
+	 */
+
+	public void setChunkSize(int chunkSize)
+	{
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------ Overwriting AbstractEvaluator methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Checks if the current evaluation splits the instances of each rule among the threads
+	 *
+	 * @return true in data parallel mode
+	 */
+
+	public boolean isDataParallel()
+	{
+		return dataParallel;
+	}
+
+	/**
+	 * Evaluates the individuals that have no fitness. A list that fits
+	 * in one chunk is evaluated by the calling thread.
+	 *
+	 * @param inds individuals to evaluate
+	 */
+
+	public void evaluate(List<IIndividual> inds)
+	{
+		long time = System.currentTimeMillis();
+
+		List<IIndividual> pending = new ArrayList<IIndividual>();
+
+		for(IIndividual ind : inds)
+			if(ind.getFitness() == null)
+				pending.add(ind);
+
+		numberOfEvaluations += pending.size();
+
+		ForkJoinPool pool = getPool(numberOfThreads);
+		int parallelism = pool.getParallelism();
+
+		// Few individuals and enough instances for every thread
+		dataParallel = parallelism > 1 && pending.size() < 2 * parallelism && numberOfInstances() >= parallelism * DATA_BLOCK;
+
+		try {
+			if(pending.size() > chunkSize && !dataParallel)
+				pool.invoke(new EvaluationTask(pending, 0, pending.size()));
+			else
+				for(IIndividual ind : pending)
+					evaluate(ind);
+		}
+		finally {
+			dataParallel = false;
+		}
+
+		executionTime += System.currentTimeMillis() - time;
+	}
+
+	/**
+	 * Evaluates an individual without fitness in the calling thread. Unlike
+	 * evaluate(List), it can be called by several threads at the same time.
+	 *
+	 * @param ind individual to evaluate
+	 */
+
+	public void evaluateConcurrently(IIndividual ind)
+	{
+		if(ind.getFitness() != null)
+			return;
+
+		long time = System.currentTimeMillis();
+
+		evaluate(ind);
+
+		synchronized(this)
+		{
+			numberOfEvaluations++;
+			executionTime += System.currentTimeMillis() - time;
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Number of instances scanned by each evaluation, used to choose the data parallel mode
+	 *
+	 * @return number of instances, 0 to never split the instances of a rule
+	 */
+
+	protected int numberOfInstances()
+	{
+		return 0;
+	}
+
+	/**
+	 * Computes the instances of a dataset covered by a rule splitting them in blocks among
+	 * the threads of the pool, and stores them as the coverage of the rule. The blocks only
+	 * share the compiled antecedent, so a rule that cannot be compiled is not split.
+	 *
+	 * @param rule the rule
+	 * @param dataset the dataset
+	 * @param numClasses number of classes
+	 * @return the covered instances of each class, followed by the total of covered instances
+	 */
+
+	protected int[] countCoverage(CrispRule rule, ColumnarDataSet dataset, int numClasses)
+	{
+		CompiledAntecedent compiled = rule.getCompiledAntecedent();
+
+		if(compiled == null)
+		{
+			InstanceBitSet coverage = rule.getCoverage(dataset);
+			int[] counts = new int[numClasses + 1];
+
+			for(int i = 0; i < numClasses; i++)
+				counts[i] = coverage.andCardinality(dataset.getClassBitSet(i));
+
+			counts[numClasses] = coverage.cardinality();
+
+			return counts;
+		}
+
+		InstanceBitSet coverage = new InstanceBitSet(dataset.numberOfInstances());
+
+		int[] counts = getPool(numberOfThreads).invoke(new CoverageTask(compiled, dataset.getColumns(), dataset.getClassLabels(), numClasses, coverage, 0, dataset.numberOfInstances()));
+
+		rule.setCoverage(dataset, coverage);
+
+		return counts;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Obtains the pool with a number of threads, creating it the first time
+	 *
+	 * @param numberOfThreads number of threads, 0 to use one per processor
+	 * @return the shared pool
+	 */
+
+	private static ForkJoinPool getPool(int numberOfThreads)
+	{
+		int parallelism = numberOfThreads > 0 ? numberOfThreads : Runtime.getRuntime().availableProcessors();
+
+		synchronized(POOLS)
+		{
+			ForkJoinPool pool = POOLS.get(parallelism);
+
+			if(pool == null)
+			{
+				pool = new ForkJoinPool(parallelism);
+				POOLS.put(parallelism, pool);
+			}
+
+			return pool;
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Inner classes
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Task that evaluates a range of individuals, splitting it in halves
+	 * until the range fits in a chunk
+	 */
+
+	private class EvaluationTask extends RecursiveAction
+	{
+		/** Generated by Eclipse */
+
+		private static final long serialVersionUID = 2780214873357460319L;
+
+		/** Individuals to evaluate */
+
+		private final List<IIndividual> inds;
+
+		/** First individual of the range */
+
+		private final int from;
+
+		/** Individual after the last one of the range */
+
+		private final int to;
+
+		/**
+		 * Constructor
+		 *
+		 * @param inds individuals to evaluate
+		 * @param from first individual of the range
+		 * @param to individual after the last one of the range
+		 */
+
+		EvaluationTask(List<IIndividual> inds, int from, int to)
+		{
+			this.inds = inds;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Evaluates the range or forks its halves
+		 */
+
+		protected void compute()
+		{
+			if(to - from <= chunkSize)
+			{
+				for(int i = from; i < to; i++)
+					evaluate(inds.get(i));
+			}
+			else
+			{
+				int middle = (from + to) >>> 1;
+
+				invokeAll(new EvaluationTask(inds, from, middle), new EvaluationTask(inds, middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Task that computes the instances of a range covered by a rule, splitting it in
+	 * halves aligned to the words of the coverage until the range fits in a block
+	 */
+
+	private static class CoverageTask extends RecursiveTask<int[]>
+	{
+		/** Generated by Eclipse */
+
+		private static final long serialVersionUID = -5206783461309187745L;
+
+		/** Compiled antecedent of the rule to evaluate */
+
+		private final CompiledAntecedent compiled;
+
+		/** Columns of the dataset */
+
+		private final double[][] columns;
+
+		/** Class labels of the instances */
+
+		private final int[] labels;
+
+		/** Number of classes */
+
+		private final int numClasses;
+
+		/** Covered instances, each task sets the words of its range */
+
+		private final InstanceBitSet coverage;
+
+		/** First instance of the range */
+
+		private final int from;
+
+		/** Instance after the last one of the range */
+
+		private final int to;
+
+		/**
+		 * Constructor
+		 *
+		 * @param compiled compiled antecedent of the rule to evaluate
+		 * @param columns columns of the dataset
+		 * @param labels class labels of the instances
+		 * @param numClasses number of classes
+		 * @param coverage covered instances
+		 * @param from first instance of the range
+		 * @param to instance after the last one of the range
+		 */
+
+		CoverageTask(CompiledAntecedent compiled, double[][] columns, int[] labels, int numClasses, InstanceBitSet coverage, int from, int to)
+		{
+			this.compiled = compiled;
+			this.columns = columns;
+			this.labels = labels;
+			this.numClasses = numClasses;
+			this.coverage = coverage;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Counts the covered instances of the range or reduces the counts of its halves
+		 */
+
+		protected int[] compute()
+		{
+			if(to - from <= DATA_BLOCK)
+			{
+				int[] counts = new int[numClasses + 1];
+
+				for(int i = from; i < to; i++)
+				{
+					if(compiled.covers(columns, i))
+					{
+						coverage.set(i);
+						counts[numClasses]++;
+
+						if(labels[i] >= 0 && labels[i] < numClasses)
+							counts[labels[i]]++;
+					}
+				}
+
+				return counts;
+			}
+			else
+			{
+				// Both halves start at a word boundary, so no word is shared
+				int middle = ((from + to) >>> 1) & ~63;
+
+				CoverageTask first = new CoverageTask(compiled, columns, labels, numClasses, coverage, from, middle);
+				CoverageTask second = new CoverageTask(compiled, columns, labels, numClasses, coverage, middle, to);
+
+				first.fork();
+				int[] counts = second.compute();
+				int[] firstCounts = first.join();
+
+				for(int j = 0; j < counts.length; j++)
+					counts[j] += firstCounts[j];
+
+				return counts;
+			}
+		}
+	}
+}
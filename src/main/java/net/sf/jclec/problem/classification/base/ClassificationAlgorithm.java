@@ -1,14 +1,43 @@
 package net.sf.jclec.problem.classification.base;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import net.sf.jclec.IFitness;
 import net.sf.jclec.IIndividual;
 import net.sf.jclec.algorithm.PopulationAlgorithm;
 import net.sf.jclec.problem.classification.IClassifier;
+import net.sf.jclec.problem.classification.IClassifierIndividual;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
+import net.sf.jclec.problem.util.dataset.FileDataset;
 import net.sf.jclec.problem.util.dataset.IDataset;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
 import net.sf.jclec.selector.BettersSelector;
 import net.sf.jclec.util.random.IRandGen;
+import net.sf.jclec.util.random.IRandGenFactory;
 
 import org.apache.commons.configuration.Configuration;
 
@@ -22,6 +51,16 @@ import org.apache.commons.configuration.Configuration;
  * doUpdate() to update the population for the next generation, and doControl() for defining the stop criteria.
  * 
  * The configure() method is overloaded to support the train/test dataset load using the parameters given in the configuration file.
+ * 
+ * Every checkpoint-frequency generations the state of the evolution (populations, counters, classifier
+ * and random generators) is written to the checkpoint file, by default the name of the training
+ * file followed by .checkpoint. With resume set, an execution that finds the checkpoint file continues
+ * from it and obtains the same results as the interrupted execution.
+ * 
+ * With remove-duplicates set, the new individuals whose antecedent is already in the population or
+ * in another new individual are replaced by new random individuals before they are evaluated.
+ * With remove-equivalent-rules set, the crisp rules that cover the same training instances are
+ * collapsed into the best of them, using their coverage as fingerprint.
  *  
  */
 
@@ -34,6 +73,14 @@ public abstract class ClassificationAlgorithm extends PopulationAlgorithm
 	/** Generated by Eclipse */
 
 	private static final long serialVersionUID = -8711970425735016406L;
+	
+	/** Extension of the default checkpoint file */
+	
+	public static final String CHECKPOINT_EXTENSION = ".checkpoint";
+	
+	/** Version of the checkpoint format */
+	
+	private static final int CHECKPOINT_VERSION = 2;
 
 	// ///////////////////////////////////////////////////////////////
 	// --------------------------------------------------- Properties
@@ -66,6 +113,38 @@ public abstract class ClassificationAlgorithm extends PopulationAlgorithm
 	/** Elitist individuals */
 
 	protected List<IIndividual> eset = new ArrayList<IIndividual>();
+	
+	/** Generations between two checkpoints, 0 to disable them */
+	
+	private int checkpointFrequency;
+	
+	/** Checkpoint file */
+	
+	private String checkpointFile;
+	
+	/** Continue from the checkpoint file if it exists */
+	
+	private boolean resume;
+	
+	/** Random generators created by the algorithm and its operators, in creation order */
+	
+	private transient List<CheckpointRandGen> randGens;
+	
+	/** Replace the new individuals that duplicate an antecedent before evaluating them */
+	
+	private boolean removeDuplicates;
+	
+	/** Duplicates removed in the last generation */
+	
+	private int duplicates;
+	
+	/** Duplicates removed in the whole execution */
+	
+	private long totalDuplicates;
+	
+	/** Keep only the best of the rules that cover the same training instances */
+	
+	private boolean removeEquivalentRules;
 
 	// ///////////////////////////////////////////////////////////////
 	// ------------------------------------------------- Constructors
@@ -163,7 +242,176 @@ public abstract class ClassificationAlgorithm extends PopulationAlgorithm
 	
 	public void initRandGen()
 	{
-		this.randgen = super.createRandGen();
+		this.randgen = createRandGen();
+	}
+	
+	/**
+	 * Creates a random generator whose position in the stream is saved in the checkpoints.
+	 * The operators keep their generators when the execution is resumed, only the state
+	 * of the generators is restored.
+	 * 
+	 * @return a new random generator
+	 */
+	
+	public IRandGen createRandGen()
+	{
+		CheckpointRandGen randgen = new CheckpointRandGen(super.createRandGen());
+		
+		if (randGens == null)
+			randGens = new ArrayList<CheckpointRandGen>();
+		
+		randGens.add(randgen);
+		
+		return randgen;
+	}
+	
+	/**
+	 * Access to the generations between two checkpoints
+	 * 
+	 * @return checkpoint frequency, 0 if disabled
+	 */
+	
+	public int getCheckpointFrequency() 
+	{
+		return checkpointFrequency;
+	}
+
+	/**
+	 * Set the generations between two checkpoints
+	 * 
+	 * @param checkpointFrequency checkpoint frequency, 0 to disable the checkpoints
+	 */
+	
+	public void setCheckpointFrequency(int checkpointFrequency) 
+	{
+		this.checkpointFrequency = checkpointFrequency;
+	}
+	
+	/**
+	 * Access to the checkpoint file
+	 * 
+	 * @return checkpoint file name
+	 */
+	
+	public String getCheckpointFile() 
+	{
+		return checkpointFile;
+	}
+
+	/**
+	 * Set the checkpoint file
+	 * 
+	 * @param checkpointFile checkpoint file name
+	 */
+	
+	public void setCheckpointFile(String checkpointFile) 
+	{
+		this.checkpointFile = checkpointFile;
+	}
+	
+	/**
+	 * Access to the resume mode
+	 * 
+	 * @return true if the execution continues from the checkpoint file
+	 */
+	
+	public boolean isResume() 
+	{
+		return resume;
+	}
+
+	/**
+	 * Set the resume mode
+	 * 
+	 * @param resume continue from the checkpoint file if it exists
+	 */
+	
+	public void setResume(boolean resume) 
+	{
+		this.resume = resume;
+	}
+	
+	/**
+	 * Access to the duplicate elimination mode
+	 * 
+	 * @return true if the duplicated new individuals are replaced
+	 */
+	
+	public boolean isRemoveDuplicates() 
+	{
+		return removeDuplicates;
+	}
+
+	/**
+	 * Set the duplicate elimination mode
+	 * 
+	 * @param removeDuplicates replace the new individuals that duplicate an antecedent
+	 */
+	
+	public void setRemoveDuplicates(boolean removeDuplicates) 
+	{
+		this.removeDuplicates = removeDuplicates;
+	}
+	
+	/**
+	 * Access to the duplicates removed in the last generation
+	 * 
+	 * @return number of duplicates
+	 */
+	
+	public int getDuplicates() 
+	{
+		return duplicates;
+	}
+	
+	/**
+	 * Access to the duplicates removed in the whole execution
+	 * 
+	 * @return number of duplicates
+	 */
+	
+	public long getTotalDuplicates() 
+	{
+		return totalDuplicates;
+	}
+	
+	/**
+	 * Access to the equivalent rules elimination mode
+	 * 
+	 * @return true if the rules that cover the same training instances are collapsed
+	 */
+	
+	public boolean isRemoveEquivalentRules() 
+	{
+		return removeEquivalentRules;
+	}
+
+	/**
+	 * Set the equivalent rules elimination mode
+	 * 
+	 * @param removeEquivalentRules keep only the best of the rules that cover the same training instances
+	 */
+	
+	public void setRemoveEquivalentRules(boolean removeEquivalentRules) 
+	{
+		this.removeEquivalentRules = removeEquivalentRules;
+	}
+	
+	/**
+	 * Executes the algorithm, continuing from the checkpoint file in resume mode
+	 */
+	
+	public void execute()
+	{
+		if (state == NEW && resume && new File(checkpointFile).exists())
+		{
+			readCheckpoint();
+			
+			state = RUNNING;
+			fireAlgorithmStarted();
+		}
+		
+		super.execute();
 	}
 	
 	// ///////////////////////////////////////////////////////////////
@@ -185,6 +433,183 @@ public abstract class ClassificationAlgorithm extends PopulationAlgorithm
 		setDatasetSettings(settings);
 		
 		initRandGen();
+		
+		// Checkpoint settings
+		setCheckpointFrequency(settings.getInt("checkpoint-frequency", 0));
+		
+		String checkpointFile = "experiment" + CHECKPOINT_EXTENSION;
+		
+		if (getTrainSet() instanceof FileDataset && ((FileDataset) getTrainSet()).getFileName() != null)
+			checkpointFile = ((FileDataset) getTrainSet()).getFileName() + CHECKPOINT_EXTENSION;
+		
+		setCheckpointFile(settings.getString("checkpoint-file", checkpointFile));
+		setResume(settings.getBoolean("resume", false));
+		
+		// Duplicate elimination settings
+		setRemoveDuplicates(settings.getBoolean("remove-duplicates", false));
+		setRemoveEquivalentRules(settings.getBoolean("remove-equivalent-rules", false));
+	}
+	
+	// ///////////////////////////////////////////////////////////////
+	// ---------------------------- Overwriting BaseAlgorithm methods
+	// ///////////////////////////////////////////////////////////////
+	
+	/**
+	 * Performs a generation and writes the checkpoint when it is due.
+	 * The checkpoint file is removed when the algorithm finishes.
+	 */
+	
+	protected void doIterate()
+	{
+		super.doIterate();
+		
+		if (checkpointFrequency > 0)
+		{
+			if (state == FINISHED)
+				new File(checkpointFile).delete();
+			else if (generation % checkpointFrequency == 0)
+				writeCheckpoint();
+		}
+	}
+	
+	// ///////////////////////////////////////////////////////////////
+	// --------------------------------------------- Protected methods
+	// ///////////////////////////////////////////////////////////////
+	
+	/**
+	 * Writes the state of the evolution. Subclasses write their own variables
+	 * after calling this method.
+	 * 
+	 * @param out checkpoint stream
+	 * @throws IOException if the state cannot be written
+	 */
+	
+	protected void writeState(ObjectOutputStream out) throws IOException
+	{
+		out.writeInt(generation);
+		out.writeInt(execution);
+		out.writeObject(bset);
+		out.writeObject(eset);
+		out.writeObject(classifier);
+		out.writeObject(randGenFactory);
+		out.writeLong(totalDuplicates);
+	}
+	
+	/**
+	 * Reads the state of the evolution written by writeState()
+	 * 
+	 * @param in checkpoint stream
+	 * @throws IOException if the state cannot be read
+	 * @throws ClassNotFoundException if a class of the state is not found
+	 */
+	
+	@SuppressWarnings("unchecked")
+	protected void readState(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		generation = in.readInt();
+		execution = in.readInt();
+		bset = (List<IIndividual>) in.readObject();
+		eset = (List<IIndividual>) in.readObject();
+		classifier = (IClassifier) in.readObject();
+		randGenFactory = (IRandGenFactory) in.readObject();
+		totalDuplicates = in.readLong();
+	}
+	
+	/**
+	 * Replaces the new individuals whose antecedent is already in the population or in a
+	 * previous new individual with new individuals of the provider. The individuals that
+	 * already have fitness are kept. Does nothing if duplicate elimination is disabled.
+	 * 
+	 * @param inds the individuals generated in this generation
+	 * @return the individuals without duplicates
+	 */
+	
+	protected List<IIndividual> removeDuplicates(List<IIndividual> inds)
+	{
+		duplicates = 0;
+		
+		if (!removeDuplicates)
+			return inds;
+		
+		Set<FitnessCache.Key> antecedents = new HashSet<FitnessCache.Key>();
+		
+		for (IIndividual ind : bset)
+			antecedents.add(antecedentKey(ind));
+		
+		List<IIndividual> unique = new ArrayList<IIndividual>(inds.size());
+		
+		for (IIndividual ind : inds)
+		{
+			if (antecedents.add(antecedentKey(ind)) || ind.getFitness() != null)
+				unique.add(ind);
+			else
+				duplicates++;
+		}
+		
+		// The new random individuals that are also duplicates are dropped
+		if (duplicates > 0)
+			for (IIndividual ind : provider.provide(duplicates))
+				if (antecedents.add(antecedentKey(ind)))
+					unique.add(ind);
+		
+		totalDuplicates += duplicates;
+		
+		return unique;
+	}
+	
+	/**
+	 * Keeps only the best of the individuals whose rules cover the same instances of a dataset.
+	 * The individuals that are not evaluated or whose rule is not a crisp rule are kept.
+	 * Does nothing if equivalent rules elimination is disabled.
+	 * 
+	 * @param inds the individuals
+	 * @param dataset the dataset of the coverage
+	 * @return the individuals without equivalent rules, in the same order
+	 */
+	
+	protected List<IIndividual> removeEquivalentRules(List<IIndividual> inds, ColumnarDataSet dataset)
+	{
+		if (!removeEquivalentRules)
+			return inds;
+		
+		Comparator<IFitness> comparator = evaluator.getComparator();
+		Map<InstanceBitSet, IIndividual> best = new HashMap<InstanceBitSet, IIndividual>();
+		
+		for (IIndividual ind : inds)
+		{
+			InstanceBitSet coverage = coverage(ind, dataset);
+			
+			if (coverage != null)
+			{
+				IIndividual other = best.get(coverage);
+				
+				if (other == null || comparator.compare(ind.getFitness(), other.getFitness()) > 0)
+					best.put(coverage, ind);
+			}
+		}
+		
+		List<IIndividual> kept = new ArrayList<IIndividual>(inds.size());
+		
+		for (IIndividual ind : inds)
+		{
+			InstanceBitSet coverage = coverage(ind, dataset);
+			
+			if (coverage == null || best.get(coverage) == ind)
+				kept.add(ind);
+		}
+		
+		return kept;
+	}
+	
+	/**
+	 * Adds the duplicates removed by the algorithm of a class or an island
+	 * 
+	 * @param algorithm the finished algorithm
+	 */
+	
+	protected void addDuplicates(ClassificationAlgorithm algorithm)
+	{
+		totalDuplicates += algorithm.totalDuplicates;
 	}
 	
 	/////////////////////////////////////////////////////////////////
@@ -192,10 +617,152 @@ public abstract class ClassificationAlgorithm extends PopulationAlgorithm
 	/////////////////////////////////////////////////////////////////
 	
 	/**
-	 * Set the dataset settings
+	 * Canonical key of the antecedent of the rule of an individual
+	 * 
+	 * @param ind the individual
+	 * @return the key
+	 */
+	
+	private static FitnessCache.Key antecedentKey(IIndividual ind)
+	{
+		return new FitnessCache.Key(((Rule) ((IClassifierIndividual) ind).getPhenotype()).getAntecedent());
+	}
+	
+	/**
+	 * Instances of a dataset covered by the rule of an evaluated individual
+	 * 
+	 * @param ind the individual
+	 * @param dataset the dataset
+	 * @return the coverage, null if it is not evaluated or it is not a crisp rule
+	 */
+	
+	private static InstanceBitSet coverage(IIndividual ind, ColumnarDataSet dataset)
+	{
+		if (ind.getFitness() == null || !(((IClassifierIndividual) ind).getPhenotype() instanceof CrispRule))
+			return null;
+		
+		CrispRule rule = (CrispRule) ((IClassifierIndividual) ind).getPhenotype();
+		
+		// The coverage is not kept in the checkpoint, so the restored rules build it again
+		return rule.getCoverage(dataset);
+	}
+	
+	/**
+	 * Objects of the execution that are not part of the checkpoint. The
+	 * checkpoint keeps references to them, resolved when it is read.
+	 * 
+	 * @return the shared objects
+	 */
+	
+	private List<Object> sharedObjects()
+	{
+		List<Object> shared = new ArrayList<Object>();
+		
+		shared.add(this);
+		shared.add(species);
+		shared.add(evaluator);
+		shared.add(getTrainSet());
+		shared.add(getTestSet());
+		shared.add(getTrainSet().getMetadata());
+		shared.add(getTestSet().getMetadata());
+		
+		return shared;
+	}
+	
+	/**
+	 * Writes the checkpoint to a temporary file that replaces the checkpoint file
+	 * with an atomic rename when it is complete
+	 */
+	
+	private void writeCheckpoint()
+	{
+		File file = new File(checkpointFile);
+		File temporary = new File(checkpointFile + "." + System.nanoTime() + ".tmp");
+		
+		List<Object> shared = sharedObjects();
+		shared.addAll(randGens);
+		
+		try {
+			CheckpointOutputStream out = new CheckpointOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temporary))), shared);
+			
+			try {
+				out.writeInt(CHECKPOINT_VERSION);
+				out.writeUTF(getClass().getName());
+				
+				// State of the random generators, in creation order
+				out.writeInt(randGens.size());
+				
+				for (CheckpointRandGen randgen : randGens)
+					out.writeObject(randgen.delegate);
+				
+				writeState(out);
+			}
+			finally {
+				out.close();
+			}
+			
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e) {
+			temporary.delete();
+			throw new RuntimeException("Error writing the checkpoint " + checkpointFile, e);
+		}
+	}
+	
+	/**
+	 * Reads the state of the evolution from the checkpoint file
+	 */
+	
+	private void readCheckpoint()
+	{
+		List<Object> shared = sharedObjects();
+		
+		try {
+			CheckpointInputStream in = new CheckpointInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(checkpointFile))), shared);
+			
+			try {
+				if (in.readInt() != CHECKPOINT_VERSION || !in.readUTF().equals(getClass().getName()))
+					throw new IOException("the checkpoint was written by another version or algorithm");
+				
+				// The configuration created the same generators in the same order, the
+				// generators created later by the interrupted execution are added
+				int numberOfRandGens = in.readInt();
+				
+				for (int i = 0; i < numberOfRandGens; i++)
+				{
+					IRandGen delegate = (IRandGen) in.readObject();
+					
+					if (i < randGens.size())
+						randGens.get(i).delegate = delegate;
+					else
+						randGens.add(new CheckpointRandGen(delegate));
+				}
+				
+				shared.addAll(randGens);
+				
+				readState(in);
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Error reading the checkpoint " + checkpointFile, e);
+		}
+		catch (ClassNotFoundException e) {
+			throw new RuntimeException("Error reading the checkpoint " + checkpointFile, e);
+		}
+	}
+	
+	/**
+	 * Set the dataset settings. The datasets set before the configuration,
+	 * e.g. shared by a parent algorithm, are not loaded again.
 	 */
 	@SuppressWarnings("unchecked")
 	protected void setDatasetSettings(Configuration settings) {
+		if (getTrainSet() != null && getTestSet() != null)
+			return;
+		
 		try {
 			//Train and test set classname
 			String datasetClassname = settings.getString("dataset[@type]");
@@ -238,4 +805,162 @@ public abstract class ClassificationAlgorithm extends PopulationAlgorithm
 			e.printStackTrace();
 		}		
 	}
-}
\ No newline at end of file
+	
+	// ///////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Inner classes
+	// ///////////////////////////////////////////////////////////////
+	
+	/**
+	 * Reference to a shared object in the checkpoint
+	 */
+	
+	private static final class SharedObject implements Serializable
+	{
+		/** Generated by Eclipse */
+		
+		private static final long serialVersionUID = 4816035312754926619L;
+		
+		/** Index of the object in the shared objects */
+		
+		private final int index;
+		
+		SharedObject(int index)
+		{
+			this.index = index;
+		}
+	}
+	
+	/**
+	 * Random generator that delegates in another one, which is replaced when a checkpoint is read
+	 */
+	
+	private static final class CheckpointRandGen implements IRandGen
+	{
+		/** Generated by Eclipse */
+		
+		private static final long serialVersionUID = -1902566213937283207L;
+		
+		/** Random generator */
+		
+		private IRandGen delegate;
+		
+		CheckpointRandGen(IRandGen delegate)
+		{
+			this.delegate = delegate;
+		}
+		
+		public double raw()
+		{
+			return delegate.raw();
+		}
+		
+		public void raw(double[] d, int n)
+		{
+			delegate.raw(d, n);
+		}
+		
+		public void raw(double[] d)
+		{
+			delegate.raw(d);
+		}
+		
+		public int choose(int to)
+		{
+			return delegate.choose(to);
+		}
+		
+		public int choose(int from, int to)
+		{
+			return delegate.choose(from, to);
+		}
+		
+		public boolean coin()
+		{
+			return delegate.coin();
+		}
+		
+		public boolean coin(double p)
+		{
+			return delegate.coin(p);
+		}
+		
+		public double uniform(double lo, double hi)
+		{
+			return delegate.uniform(lo, hi);
+		}
+		
+		public double gaussian()
+		{
+			return delegate.gaussian();
+		}
+		
+		public double gaussian(double sd)
+		{
+			return delegate.gaussian(sd);
+		}
+		
+		public double powlaw(double alpha, double cut)
+		{
+			return delegate.powlaw(alpha, cut);
+		}
+	}
+	
+	/**
+	 * Stream that writes references instead of the shared objects. The instances
+	 * of the datasets are not part of the state, so they are written as null.
+	 */
+	
+	private static final class CheckpointOutputStream extends ObjectOutputStream
+	{
+		/** Shared objects */
+		
+		private final List<Object> shared;
+		
+		CheckpointOutputStream(OutputStream out, List<Object> shared) throws IOException
+		{
+			super(out);
+			
+			this.shared = shared;
+			enableReplaceObject(true);
+		}
+		
+		protected Object replaceObject(Object obj) throws IOException
+		{
+			for (int i = 0; i < shared.size(); i++)
+				if (shared.get(i) == obj)
+					return new SharedObject(i);
+			
+			if (obj instanceof IInstance)
+				return null;
+			
+			return obj;
+		}
+	}
+	
+	/**
+	 * Stream that resolves the references to the shared objects
+	 */
+	
+	private static final class CheckpointInputStream extends ObjectInputStream
+	{
+		/** Shared objects */
+		
+		private final List<Object> shared;
+		
+		CheckpointInputStream(InputStream in, List<Object> shared) throws IOException
+		{
+			super(in);
+			
+			this.shared = shared;
+			enableResolveObject(true);
+		}
+		
+		protected Object resolveObject(Object obj) throws ObjectStreamException
+		{
+			if (obj instanceof SharedObject)
+				return shared.get(((SharedObject) obj).index);
+			
+			return obj;
+		}
+	}
+}
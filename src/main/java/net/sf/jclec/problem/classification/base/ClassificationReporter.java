@@ -168,10 +168,13 @@ public abstract class ClassificationReporter implements IAlgorithmListener, ICon
 		Date now = new Date(); // java.util.Date, NOT java.sql.Date or java.sql.Timestamp!
 		String date = new SimpleDateFormat("yyyy.MM.dd'_'HH.mm.ss.SS").format(now);
 		
-		// Init report directory
+		// Init report directory (numbered if another run started in the same millisecond)
 		reportDirectory = new File(reportDirName + "_" + date);
-		if (! reportDirectory.mkdir()) {
-			throw new RuntimeException("Error creating report directory");
+		for (int i = 1; ! reportDirectory.mkdir(); i++) {
+			if (! reportDirectory.exists()) {
+				throw new RuntimeException("Error creating report directory");
+			}
+			reportDirectory = new File(reportDirName + "_" + date + "_" + i);
 		}
 		// Do report
 		doIterationReport((ClassificationAlgorithm) event.getAlgorithm());
@@ -182,7 +185,10 @@ public abstract class ClassificationReporter implements IAlgorithmListener, ICon
 		endTime = System.currentTimeMillis();
 		afterUsedMem=Runtime.getRuntime().totalMemory()-Runtime.getRuntime().freeMemory();
 		doDataReport((ClassificationAlgorithm) event.getAlgorithm());
-		doClassificationReport((ClassificationAlgorithm) event.getAlgorithm());
+		// The global report files can be shared by runs executed concurrently
+		synchronized (ClassificationReporter.class) {
+			doClassificationReport((ClassificationAlgorithm) event.getAlgorithm());
+		}
 	}
 
 	public void iterationCompleted(AlgorithmEvent event) 
@@ -269,6 +275,9 @@ public abstract class ClassificationReporter implements IAlgorithmListener, ICon
 				BettersSelector b_selector = new BettersSelector();
 				b_selector.contextualize(algorithm);
 				
+				if (algorithm.isRemoveDuplicates())
+					buffer.append("Duplicates removed: " + algorithm.getDuplicates() + "\n");
+				
 				//Obtains the best individuals
 				inds = b_selector.select(inds);
 				
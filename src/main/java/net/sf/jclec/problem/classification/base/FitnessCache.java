@@ -0,0 +1,315 @@
+package net.sf.jclec.problem.classification.base;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.exprtree.IPrimitive;
+import net.sf.jclec.problem.classification.blocks.AttributeValue;
+import net.sf.jclec.problem.classification.blocks.ConstantValue;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
+
+/**
+ * Bounded fitness cache for rule evaluators.<p/>
+ *
+ * Stores the fitness, consequent and coverage (or the certainty, for fuzzy rules)
+ * obtained for a rule antecedent, so a
+ * genotype that produces an antecedent already evaluated is not scored again.
+ * Entries are keyed by the antecedent ExprTree (compared block by block, with
+ * constants compared by their bit pattern) and evicted in least recently used order
+ * when the capacity is reached.
+ *
+ * All the methods are synchronized, so the cache can be shared by the threads of a
+ * parallel evaluator. The number of hits and misses is counted to measure the
+ * evaluations that were saved.
+ *
+ */
+
+public class FitnessCache implements Serializable
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = 6243097150723918047L;
+
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Properties
+	/////////////////////////////////////////////////////////////////
+
+	/** Maximum number of entries */
+
+	private final int capacity;
+
+	/** Number of lookups that found an entry */
+
+	private long hits;
+
+	/** Number of lookups that did not find an entry */
+
+	private long misses;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------- Internal variables
+	/////////////////////////////////////////////////////////////////
+
+	/** Entries in access order */
+
+	private final LinkedHashMap<Key, Entry> entries;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity maximum number of entries
+	 */
+
+	public FitnessCache(final int capacity)
+	{
+		super();
+
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Looks for the entry of an antecedent
+	 *
+	 * @param antecedent the rule antecedent
+	 * @return the cached entry, null if the antecedent has not been evaluated
+	 */
+
+	public synchronized Entry get(ExprTree antecedent)
+	{
+		Entry entry = entries.get(new Key(antecedent));
+
+		if(entry == null)
+			misses++;
+		else
+			hits++;
+
+		return entry;
+	}
+
+	/**
+	 * Stores the evaluation of an antecedent
+	 *
+	 * @param antecedent the rule antecedent
+	 * @param fitness fitness value
+	 * @param consequent consequent assigned by the evaluator
+	 * @param coverage instances covered by the antecedent
+	 */
+
+	public synchronized void put(ExprTree antecedent, double fitness, double consequent, InstanceBitSet coverage)
+	{
+		if(capacity > 0)
+			entries.put(new Key(antecedent.copy()), new Entry(fitness, consequent, Double.NaN, coverage));
+	}
+
+	/**
+	 * Stores the evaluation of a fuzzy antecedent
+	 *
+	 * @param antecedent the rule antecedent
+	 * @param fitness fitness value
+	 * @param consequent consequent assigned by the evaluator
+	 * @param certainty certainty assigned by the evaluator
+	 */
+
+	public synchronized void put(ExprTree antecedent, double fitness, double consequent, double certainty)
+	{
+		if(capacity > 0)
+			entries.put(new Key(antecedent.copy()), new Entry(fitness, consequent, certainty, null));
+	}
+
+	/**
+	 * Removes all the entries. The counters are kept.
+	 */
+
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Get the number of entries
+	 *
+	 * @return number of entries
+	 */
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Get the maximum number of entries
+	 *
+	 * @return capacity
+	 */
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Get the number of lookups that found an entry
+	 *
+	 * @return number of hits
+	 */
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * Get the number of lookups that did not find an entry
+	 *
+	 * @return number of misses
+	 */
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Inner classes
+	/////////////////////////////////////////////////////////////////
+
+	/** Result of the evaluation of an antecedent */
+
+	public static final class Entry implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double fitness;
+
+		private final double consequent;
+
+		private final double certainty;
+
+		private final InstanceBitSet coverage;
+
+		Entry(double fitness, double consequent, double certainty, InstanceBitSet coverage)
+		{
+			this.fitness = fitness;
+			this.consequent = consequent;
+			this.certainty = certainty;
+			this.coverage = coverage;
+		}
+
+		/** @return fitness value */
+
+		public double getFitness()
+		{
+			return fitness;
+		}
+
+		/** @return consequent assigned by the evaluator */
+
+		public double getConsequent()
+		{
+			return consequent;
+		}
+
+		/** @return certainty assigned by the evaluator, NaN for crisp rules */
+		public double getCertainty()
+		{
+			return certainty;
+		}
+
+		/** @return instances covered by the antecedent, null for fuzzy rules */
+
+		public InstanceBitSet getCoverage()
+		{
+			return coverage;
+		}
+	}
+
+	/** Canonical key of an antecedent, also used to detect duplicated antecedents */
+
+	public static final class Key implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final ExprTree tree;
+
+		private final int hash;
+
+		/** @param tree the antecedent, which must not be modified while the key is used */
+		public Key(ExprTree tree)
+		{
+			this.tree = tree;
+
+			int hash = tree.size();
+			for(int i=0; i<tree.size(); i++)
+				hash = 31 * hash + hash(tree.getBlock(i));
+			this.hash = hash;
+		}
+
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		public boolean equals(Object other)
+		{
+			if(!(other instanceof Key))
+				return false;
+
+			Key key = (Key) other;
+
+			if(key.hash != hash || key.tree.size() != tree.size())
+				return false;
+
+			for(int i=0; i<tree.size(); i++)
+				if(!equals(tree.getBlock(i), key.tree.getBlock(i)))
+					return false;
+
+			return true;
+		}
+
+		private static int hash(IPrimitive block)
+		{
+			if(block instanceof AttributeValue)
+				return ((AttributeValue) block).getAttributeIndex();
+			if(block instanceof ConstantValue)
+			{
+				long bits = Double.doubleToLongBits(((ConstantValue) block).getValue());
+				return (int) (bits ^ (bits >>> 32));
+			}
+			return block.getClass().getName().hashCode();
+		}
+
+		private static boolean equals(IPrimitive block1, IPrimitive block2)
+		{
+			if(block1.getClass() != block2.getClass())
+				return false;
+			if(block1 instanceof AttributeValue)
+				return ((AttributeValue) block1).getAttributeIndex() == ((AttributeValue) block2).getAttributeIndex();
+			if(block1 instanceof ConstantValue)
+				return Double.doubleToLongBits(((ConstantValue) block1).getValue()) == Double.doubleToLongBits(((ConstantValue) block2).getValue());
+			return block1.equals(block2);
+		}
+	}
+}
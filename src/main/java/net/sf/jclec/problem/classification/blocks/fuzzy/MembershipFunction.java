@@ -77,6 +77,7 @@ public abstract class MembershipFunction extends AbstractPrimitive
 	 */
 	public void setInterval(Interval interval) {
 		this.interval = interval;
+		labelsChanged();
 	}
 
 	/**
@@ -93,6 +94,7 @@ public abstract class MembershipFunction extends AbstractPrimitive
 	 */
 	public void setLabels(ArrayList<String> labels) {
 		this.labels = labels;
+		labelsChanged();
 	}
 
 	/**
@@ -109,6 +111,7 @@ public abstract class MembershipFunction extends AbstractPrimitive
 	 */
 	public void setLabelsSet(ArrayList<String> labelsSet) {
 		this.labelsSet = labelsSet;
+		labelsChanged();
 	}
 	
 	/**
@@ -133,6 +136,20 @@ public abstract class MembershipFunction extends AbstractPrimitive
 	
 	public abstract void initializeLabel();
 	
+	/**
+	 * Check the compatibility degree of the values of a numeric column with the membership function
+	 * 
+	 * @param values the attribute values
+	 * @param numberOfValues number of values to check
+	 * @param degrees array where the compatibility degrees are stored
+	 */
+	
+	public void compatibilityDegrees(double[] values, int numberOfValues, double[] degrees)
+	{
+		for(int i = 0; i < numberOfValues; i++)
+			degrees[i] = compatibilityDegree(values[i]);
+	}
+	
 	/**
 	 * Execute this operation over the stack and context
 	 * 
@@ -144,12 +161,56 @@ public abstract class MembershipFunction extends AbstractPrimitive
 		super.push(context, this);
 	}
 	
+	/**
+	 * Equals method
+	 *
+	 * @param other the object to compare
+	 * @return true if it is a membership function of the same class with the same interval and labels
+	 */
+
+	public boolean equals(Object other)
+	{
+		if(other == null || other.getClass() != getClass())
+			return false;
+
+		MembershipFunction function = (MembershipFunction) other;
+
+		if(interval == null ? function.interval != null : !interval.equals(function.interval))
+			return false;
+
+		return labels.equals(function.labels) && labelsSet.equals(function.labelsSet);
+	}
+
+	/**
+	 * Hash code method
+	 *
+	 * @return a hash code built from the class, the interval and the labels
+	 */
+
+	public int hashCode()
+	{
+		int hash = getClass().getName().hashCode();
+
+		// Interval does not override hashCode, so its bounds are hashed here
+		if(interval != null)
+		{
+			hash = 31 * hash + Double.valueOf(interval.getLeft() + 0.0).hashCode();
+			hash = 31 * hash + Double.valueOf(interval.getRight() + 0.0).hashCode();
+			hash = 31 * hash + interval.getClosure().ordinal();
+		}
+
+		hash = 31 * hash + labels.hashCode();
+		hash = 31 * hash + labelsSet.hashCode();
+
+		return hash;
+	}
+
 	/**
 	 * Shows this operation identification
-	 * 
+	 *
 	 * @return the labels employed
 	 */
-	
+
 	public String toString()
 	{
 		String str = "";
@@ -159,4 +220,18 @@ public abstract class MembershipFunction extends AbstractPrimitive
 		
 		return str.substring(0,str.length()-3);
 	}
+	
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Notifies that the interval, the labels or the set of available labels have changed.
+	 * The lists returned by getLabels() and getLabelsSet() must not be modified afterwards
+	 * without calling this method (or the setters).
+	 */
+	
+	protected void labelsChanged()
+	{
+	}
 }
\ No newline at end of file
@@ -12,6 +12,12 @@ import net.sf.jclec.util.range.Interval;
  * 
  * The main method is compatibilityDegree() which checks the compatibility degree of an attribute value with the membership function.
  * 
+ * The labels are evaluated by their index in the set of available labels. The indices of the labels
+ * in use, the centers of the available labels and the slope of the triangles are computed the first
+ * time a degree is checked, and again after the interval or the labels are changed with the setters.
+ * As the triangles are evenly spaced, a value is only compatible with the label whose center is
+ * nearest and its neighbours, so the degree is checked in constant time whatever the number of labels.
+ * 
  * @author Alberto Cano
  */
 
@@ -25,6 +31,26 @@ public class TriangularMembershipFunction extends MembershipFunction
 	
 	private double labelProb = 0.3;
 	
+	/** Distance between the centers of two consecutive labels */
+	
+	private transient double stepSize;
+	
+	/** Slope of the sides of the triangles (inverse of the step size) */
+	
+	private transient double slope;
+	
+	/** Centers of the available labels */
+	
+	private transient double[] centers;
+	
+	/** Indices of the labels in use in the set of available labels */
+	
+	private transient int[] labelIndices;
+	
+	/** Labels of the set of available labels that are in use */
+	
+	private transient boolean[] inUse;
+	
 	/////////////////////////////////////////////////////////////////
 	// -------------------------------------------------- Constructor
 	/////////////////////////////////////////////////////////////////
@@ -91,6 +117,8 @@ public class TriangularMembershipFunction extends MembershipFunction
 		
 		if(labels.size() == 0)
 			labels.add(labelsSet.get(randgen.choose(0,labelsSet.size())));
+		
+		labelsChanged();
 	}
 	
 	/**
@@ -102,19 +130,47 @@ public class TriangularMembershipFunction extends MembershipFunction
 	
 	public double compatibilityDegree(double value)
 	{
+		if(centers == null)
+			createTables();
+		
+		// Index of the label whose center is nearest
+		double position = (value - interval.getLeft()) * slope;
+		
+		if(!(position > -1.0 && position < centers.length))
+			return 0.0;
+		
+		int nearest = (int) Math.round(position);
+		
 		double maxCompatibility = 0.0;
 		
-		for(int i = 0; i < labels.size(); i++)
+		for(int i = Math.max(nearest - 1, 0); i <= nearest + 1 && i < centers.length; i++)
 		{
-			double compatibility = compatibilityDegree(labels.get(i), value);
-			
-			if(compatibility > maxCompatibility)
-				maxCompatibility = compatibility;
+			if(inUse[i])
+			{
+				double compatibility = compatibilityDegree(i, value);
+				
+				if(compatibility > maxCompatibility)
+					maxCompatibility = compatibility;
+			}
 		}
 		
 		return maxCompatibility;
 	}
 	
+	/**
+	 * Gets the indices of the labels in use in the set of available labels
+	 * 
+	 * @return the label indices
+	 */
+	
+	public int[] getLabelIndices()
+	{
+		if(centers == null)
+			createTables();
+		
+		return labelIndices;
+	}
+	
 	/**
 	 * Implementation of copy()
 	 * 
@@ -134,36 +190,79 @@ public class TriangularMembershipFunction extends MembershipFunction
 		return new TriangularMembershipFunction(new Interval(interval.getLeft(), interval.getRight(), interval.getClosure()), labelsCopy, labelsSetCopy, randgen);
 	}
 	
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Discards the label tables, they are computed again when a degree is checked
+	 * 
+	 * {@inheritDoc}
+	 */
+	
+	protected void labelsChanged()
+	{
+		centers = null;
+		labelIndices = null;
+		inUse = null;
+	}
+	
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Computes the label indices, the centers and the slope from the interval and the labels
+	 */
+	
+	private void createTables()
+	{
+		int numberOfLabels = labelsSet.size();
+		
+		stepSize = (interval.getRight() - interval.getLeft()) / (double) (numberOfLabels - 1);
+		slope = 1.0 / stepSize;
+		
+		double[] centers = new double[numberOfLabels];
+		
+		for(int i = 0; i < numberOfLabels; i++)
+			centers[i] = interval.getLeft() + i*stepSize;
+		
+		int[] labelIndices = new int[labels.size()];
+		boolean[] inUse = new boolean[numberOfLabels];
+		
+		for(int i = 0; i < labels.size(); i++)
+		{
+			labelIndices[i] = labelsSet.indexOf(labels.get(i));
+			
+			if(labelIndices[i] >= 0)
+				inUse[labelIndices[i]] = true;
+		}
+		
+		this.labelIndices = labelIndices;
+		this.inUse = inUse;
+		this.centers = centers;
+	}
+	
 	/**
 	 * Check the compatibility degree of an attribute value with a certain label over the membership function
 	 * 
-	 * @param function the label
+	 * @param label index of the label in the set of available labels
 	 * @param value the attribute value
 	 * @return the compatibility degree
 	 */
 	
-	private double compatibilityDegree(String function, double value)
+	private double compatibilityDegree(int label, double value)
 	{
-		double stepSize = (interval.getRight() - interval.getLeft()) / (double) (labelsSet.size() - 1);
-		
-		double left, center, right;
-
-		center = interval.getLeft() + labelsSet.indexOf(function)*stepSize;
-		left = center - stepSize;
-		right = center + stepSize;
+		double center = centers[label];
 		
 		if(value == center)
 			return 1.0;
 		
-		if(value <= left || value >= right)
-			return 0.0;
+		double distance = Math.abs(value - center);
 		
-		if(left < value && value < center)
-			return (value-left) / (center-left);
-	
-		if(right > value && value > center)
-			return (right-value) / (right-center);
+		if(!(distance < stepSize))
+			return 0.0;
 		
-		return 0.0;
+		return 1.0 - distance * slope;
 	}
 }
\ No newline at end of file
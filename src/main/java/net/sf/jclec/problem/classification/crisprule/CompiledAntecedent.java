@@ -0,0 +1,444 @@
+package net.sf.jclec.problem.classification.crisprule;
+
+import java.io.Serializable;
+
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.exprtree.IPrimitive;
+import net.sf.jclec.problem.classification.blocks.And;
+import net.sf.jclec.problem.classification.blocks.AttributeValue;
+import net.sf.jclec.problem.classification.blocks.ConstantValue;
+import net.sf.jclec.problem.classification.blocks.Equal;
+import net.sf.jclec.problem.classification.blocks.Greater;
+import net.sf.jclec.problem.classification.blocks.GreaterOrEqual;
+import net.sf.jclec.problem.classification.blocks.In;
+import net.sf.jclec.problem.classification.blocks.Less;
+import net.sf.jclec.problem.classification.blocks.LessOrEqual;
+import net.sf.jclec.problem.classification.blocks.Not;
+import net.sf.jclec.problem.classification.blocks.NotEqual;
+import net.sf.jclec.problem.classification.blocks.Or;
+import net.sf.jclec.problem.classification.blocks.Out;
+
+/**
+ * Compiled form of a crisp rule antecedent.<p/>
+ *
+ * The prefix ExprTree of a CrispRule is translated once into a tree of immutable predicate nodes
+ * that work on primitive values only. Evaluating the compiled antecedent over an instance does not
+ * touch the ExprTreeFunction stack, so no Double/Boolean objects are created per instance.
+ *
+ * The nodes reproduce exactly the semantics of the primitives in the blocks package
+ * (argument order, interval swapping in IN/OUT and Double.compareTo() equality in = and !=).
+ *
+ * The compile() method returns null when the antecedent contains a primitive that has no
+ * compiled counterpart; in that case the rule keeps using the stack interpreter.
+ *
+ */
+
+public abstract class CompiledAntecedent implements Serializable
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = 4187962257105310391L;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Empty constructor
+	 */
+
+	protected CompiledAntecedent()
+	{
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Checks if the antecedent covers the instance with the given values
+	 *
+	 * @param values attribute values of the instance
+	 * @return true if the antecedent covers the instance, false otherwise
+	 */
+
+	public abstract boolean covers(double[] values);
+
+	/**
+	 * Checks if the antecedent covers an instance stored by columns
+	 *
+	 * @param columns attribute columns of the dataset, indexed as columns[attribute][instance]
+	 * @param index instance index
+	 * @return true if the antecedent covers the instance, false otherwise
+	 */
+
+	public abstract boolean covers(double[][] columns, int index);
+
+	/**
+	 * Compiles the antecedent of a crisp rule
+	 *
+	 * @param antecedent the prefix expression tree of the rule
+	 * @return the compiled antecedent, or null if the tree contains unsupported primitives
+	 */
+
+	public static CompiledAntecedent compile(ExprTree antecedent)
+	{
+		if(antecedent == null || antecedent.size() == 0)
+			return null;
+
+		int [] cursor = new int [] {0};
+
+		CompiledAntecedent compiled = compile(antecedent, cursor);
+
+		// The whole tree must have been consumed by a single expression
+		if(compiled == null || cursor[0] != antecedent.size())
+			return null;
+
+		return compiled;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Compiles the boolean expression starting at the cursor position
+	 *
+	 * @param tree the expression tree
+	 * @param cursor current position, updated to the position following the expression
+	 * @return the compiled expression or null if it is not supported
+	 */
+
+	private static CompiledAntecedent compile(ExprTree tree, int [] cursor)
+	{
+		if(cursor[0] >= tree.size())
+			return null;
+
+		IPrimitive block = tree.getBlock(cursor[0]++);
+
+		if(block instanceof And || block instanceof Or)
+		{
+			CompiledAntecedent left = compile(tree, cursor);
+			if(left == null) return null;
+			CompiledAntecedent right = compile(tree, cursor);
+			if(right == null) return null;
+
+			if(block instanceof And)
+				return new AndNode(left, right);
+			else
+				return new OrNode(left, right);
+		}
+
+		if(block instanceof Not)
+		{
+			CompiledAntecedent arg = compile(tree, cursor);
+			if(arg == null) return null;
+
+			return new NotNode(arg);
+		}
+
+		if(block instanceof In || block instanceof Out)
+		{
+			int [] arg = new int[3];
+			double [] constant = new double[3];
+
+			for(int i = 0; i < 3; i++)
+				if(!operand(tree, cursor, i, arg, constant))
+					return null;
+
+			if(block instanceof In)
+				return new InNode(arg[0], constant[0], arg[1], constant[1], arg[2], constant[2]);
+			else
+				return new OutNode(arg[0], constant[0], arg[1], constant[1], arg[2], constant[2]);
+		}
+
+		int operator = comparison(block);
+
+		if(operator != -1)
+		{
+			int [] arg = new int[2];
+			double [] constant = new double[2];
+
+			for(int i = 0; i < 2; i++)
+				if(!operand(tree, cursor, i, arg, constant))
+					return null;
+
+			return new ComparisonNode(operator, arg[0], constant[0], arg[1], constant[1]);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reads a numerical operand (attribute or constant) at the cursor position
+	 *
+	 * @param tree the expression tree
+	 * @param cursor current position
+	 * @param i operand position
+	 * @param arg attribute indexes of the operands, -1 for constants
+	 * @param constant constant values of the operands
+	 * @return true if the operand is supported
+	 */
+
+	private static boolean operand(ExprTree tree, int [] cursor, int i, int [] arg, double [] constant)
+	{
+		if(cursor[0] >= tree.size())
+			return false;
+
+		IPrimitive block = tree.getBlock(cursor[0]++);
+
+		if(block instanceof AttributeValue)
+		{
+			arg[i] = ((AttributeValue) block).getAttributeIndex();
+			return true;
+		}
+		if(block instanceof ConstantValue)
+		{
+			arg[i] = -1;
+			constant[i] = ((ConstantValue) block).getValue();
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Obtains the comparison operator code of a block
+	 *
+	 * @param block the block
+	 * @return the operator code, -1 if the block is not a comparison
+	 */
+
+	private static int comparison(IPrimitive block)
+	{
+		if(block instanceof Greater)
+			return ComparisonNode.GREATER;
+		if(block instanceof GreaterOrEqual)
+			return ComparisonNode.GREATER_OR_EQUAL;
+		if(block instanceof Less)
+			return ComparisonNode.LESS;
+		if(block instanceof LessOrEqual)
+			return ComparisonNode.LESS_OR_EQUAL;
+		if(block instanceof Equal)
+			return ComparisonNode.EQUAL;
+		if(block instanceof NotEqual)
+			return ComparisonNode.NOT_EQUAL;
+		return -1;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Inner classes
+	/////////////////////////////////////////////////////////////////
+
+	/** Logical AND of two expressions */
+
+	private static final class AndNode extends CompiledAntecedent
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final CompiledAntecedent left, right;
+
+		AndNode(CompiledAntecedent left, CompiledAntecedent right)
+		{
+			this.left = left;
+			this.right = right;
+		}
+
+		public boolean covers(double[] values)
+		{
+			return left.covers(values) && right.covers(values);
+		}
+
+		public boolean covers(double[][] columns, int index)
+		{
+			return left.covers(columns, index) && right.covers(columns, index);
+		}
+	}
+
+	/** Logical OR of two expressions */
+
+	private static final class OrNode extends CompiledAntecedent
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final CompiledAntecedent left, right;
+
+		OrNode(CompiledAntecedent left, CompiledAntecedent right)
+		{
+			this.left = left;
+			this.right = right;
+		}
+
+		public boolean covers(double[] values)
+		{
+			return left.covers(values) || right.covers(values);
+		}
+
+		public boolean covers(double[][] columns, int index)
+		{
+			return left.covers(columns, index) || right.covers(columns, index);
+		}
+	}
+
+	/** Logical NOT of an expression */
+
+	private static final class NotNode extends CompiledAntecedent
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final CompiledAntecedent arg;
+
+		NotNode(CompiledAntecedent arg)
+		{
+			this.arg = arg;
+		}
+
+		public boolean covers(double[] values)
+		{
+			return !arg.covers(values);
+		}
+
+		public boolean covers(double[][] columns, int index)
+		{
+			return !arg.covers(columns, index);
+		}
+	}
+
+	/** Binary comparison between two operands */
+
+	private static final class ComparisonNode extends CompiledAntecedent
+	{
+		private static final long serialVersionUID = 1L;
+
+		static final int GREATER = 0, GREATER_OR_EQUAL = 1, LESS = 2, LESS_OR_EQUAL = 3, EQUAL = 4, NOT_EQUAL = 5;
+
+		private final int operator;
+
+		private final int arg1, arg2;
+
+		private final double constant1, constant2;
+
+		ComparisonNode(int operator, int arg1, double constant1, int arg2, double constant2)
+		{
+			this.operator = operator;
+			this.arg1 = arg1;
+			this.constant1 = constant1;
+			this.arg2 = arg2;
+			this.constant2 = constant2;
+		}
+
+		public boolean covers(double[] values)
+		{
+			return compare(arg1 < 0 ? constant1 : values[arg1], arg2 < 0 ? constant2 : values[arg2]);
+		}
+
+		public boolean covers(double[][] columns, int index)
+		{
+			return compare(arg1 < 0 ? constant1 : columns[arg1][index], arg2 < 0 ? constant2 : columns[arg2][index]);
+		}
+
+		private boolean compare(double value1, double value2)
+		{
+			switch(operator)
+			{
+				case GREATER:			return value1 > value2;
+				case GREATER_OR_EQUAL:	return value1 >= value2;
+				case LESS:				return value1 < value2;
+				case LESS_OR_EQUAL:		return value1 <= value2;
+				case EQUAL:				return Double.compare(value1, value2) == 0;
+				default:				return Double.compare(value1, value2) != 0;
+			}
+		}
+	}
+
+	/** Value strictly inside an interval */
+
+	private static final class InNode extends CompiledAntecedent
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int arg, bound1, bound2;
+
+		private final double constant, constant1, constant2;
+
+		InNode(int arg, double constant, int bound1, double constant1, int bound2, double constant2)
+		{
+			this.arg = arg;
+			this.constant = constant;
+			this.bound1 = bound1;
+			this.constant1 = constant1;
+			this.bound2 = bound2;
+			this.constant2 = constant2;
+		}
+
+		public boolean covers(double[] values)
+		{
+			return test(arg < 0 ? constant : values[arg], bound1 < 0 ? constant1 : values[bound1], bound2 < 0 ? constant2 : values[bound2]);
+		}
+
+		public boolean covers(double[][] columns, int index)
+		{
+			return test(arg < 0 ? constant : columns[arg][index], bound1 < 0 ? constant1 : columns[bound1][index], bound2 < 0 ? constant2 : columns[bound2][index]);
+		}
+
+		private boolean test(double value, double min, double max)
+		{
+			if(min > max)
+			{
+				double aux = min;
+				min = max;
+				max = aux;
+			}
+
+			return value > min && value < max;
+		}
+	}
+
+	/** Value outside (or on the border of) an interval */
+
+	private static final class OutNode extends CompiledAntecedent
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int arg, bound1, bound2;
+
+		private final double constant, constant1, constant2;
+
+		OutNode(int arg, double constant, int bound1, double constant1, int bound2, double constant2)
+		{
+			this.arg = arg;
+			this.constant = constant;
+			this.bound1 = bound1;
+			this.constant1 = constant1;
+			this.bound2 = bound2;
+			this.constant2 = constant2;
+		}
+
+		public boolean covers(double[] values)
+		{
+			return test(arg < 0 ? constant : values[arg], bound1 < 0 ? constant1 : values[bound1], bound2 < 0 ? constant2 : values[bound2]);
+		}
+
+		public boolean covers(double[][] columns, int index)
+		{
+			return test(arg < 0 ? constant : columns[arg][index], bound1 < 0 ? constant1 : columns[bound1][index], bound2 < 0 ? constant2 : columns[bound2][index]);
+		}
+
+		private boolean test(double value, double min, double max)
+		{
+			if(min > max)
+			{
+				double aux = min;
+				min = max;
+				max = aux;
+			}
+
+			return value <= min || value >= max;
+		}
+	}
+}
@@ -7,6 +7,9 @@ import net.sf.jclec.problem.classification.blocks.AttributeValue;
 import net.sf.jclec.problem.classification.blocks.Not;
 import net.sf.jclec.problem.classification.blocks.Or;
 import net.sf.jclec.problem.classification.blocks.RandomConstantOfContinuousValues;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
+import net.sf.jclec.problem.util.dataset.instance.ColumnarInstance;
 import net.sf.jclec.problem.util.dataset.instance.IInstance;
 import net.sf.jclec.problem.util.dataset.attribute.NumericalAttribute;
 import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
@@ -18,6 +21,10 @@ import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
  * If the rule covers an instance it returns the consequent as the class prediction.
  * Otherwise, it returns -1 indicating that the rule cannot classify the given instance.
  * 
+ * The antecedent is compiled on demand into a CompiledAntecedent, so covers() and matches() evaluate
+ * the rule over primitive values instead of running the ExprTreeFunction stack machine.
+ * The instances of a ColumnarDataSet covered by the rule are cached as an InstanceBitSet by getCoverage().
+ * 
  * The getConditions() method calculates the number of conditions of the rule as indicator of its length.
  * The toString() method shows a human-readable representation of the rule based on the metadata context (attributes names and values).
  * 
@@ -38,6 +45,26 @@ public class CrispRule extends Rule
 	
 	private static final long serialVersionUID = -8174242256644010121L;
 
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------- Internal variables
+	/////////////////////////////////////////////////////////////////
+
+	/** Compiled antecedent, built on first use */
+	
+	private transient CompiledAntecedent compiled;
+	
+	/** The antecedent has been compiled (compiled is null if it is not supported), volatile to publish compiled to the other threads */
+	
+	private transient volatile boolean isCompiled;
+	
+	/** Instances covered by the rule in coverageDataset, built on first use */
+	
+	private transient InstanceBitSet coverage;
+	
+	/** Dataset the coverage belongs to */
+	
+	private transient ColumnarDataSet coverageDataset;
+
 	/////////////////////////////////////////////////////////////////
 	// ------------------------------------------------- Constructors
 	/////////////////////////////////////////////////////////////////
@@ -76,12 +103,151 @@ public class CrispRule extends Rule
 	@Override
 	public double classify(IInstance instance)
 	{
-		if((Boolean) covers(instance))
+		if(matches(instance))
 			return consequent;
 		else
 			return -1;
 	}
 	
+	/**
+	 * Sets rule antecedent and discards the compiled antecedent
+	 * 
+	 * {@inheritDoc}
+	 */
+	
+	@Override
+	public void setAntecedent(ExprTree antecedent) 
+	{
+		super.setAntecedent(antecedent);
+		compiled = null;
+		isCompiled = false;
+		coverage = null;
+		coverageDataset = null;
+	}
+	
+	/**
+	 * Access to the compiled antecedent of the rule
+	 * 
+	 * @return the compiled antecedent, null if the antecedent cannot be compiled
+	 */
+	
+	public CompiledAntecedent getCompiledAntecedent()
+	{
+		if(!isCompiled)
+		{
+			compiled = CompiledAntecedent.compile(code);
+			isCompiled = true;
+		}
+		
+		return compiled;
+	}
+	
+	/** 
+	 *  Checks if the rule covers an instance
+	 *  
+	 *  @param instance the instance
+	 *  
+	 *  @return true or false
+	 */
+	
+	public boolean matches(IInstance instance)
+	{
+		CompiledAntecedent compiled = getCompiledAntecedent();
+		
+		if(compiled == null)
+			return (Boolean) super.covers(instance);
+		
+		if(instance instanceof ColumnarInstance)
+			return compiled.covers(((ColumnarInstance) instance).getColumns(), ((ColumnarInstance) instance).getIndex());
+		else
+			return compiled.covers(instance.getValues());
+	}
+	
+	/** 
+	 *  Checks if the rule covers an instance of a columnar dataset
+	 *  
+	 *  @param dataset the dataset
+	 *  @param index the instance index
+	 *  
+	 *  @return true or false
+	 */
+	
+	public boolean matches(ColumnarDataSet dataset, int index)
+	{
+		CompiledAntecedent compiled = getCompiledAntecedent();
+		
+		if(compiled != null)
+			return compiled.covers(dataset.getColumns(), index);
+		else
+			return (Boolean) super.covers(dataset.getInstances().get(index));
+	}
+	
+	/**
+	 * Access to the instances of a columnar dataset covered by the rule.
+	 * The set is computed once and kept until the antecedent changes, so it
+	 * must not be modified by the caller.
+	 * 
+	 * @param dataset the dataset
+	 * 
+	 * @return the set of covered instances
+	 */
+	
+	public InstanceBitSet getCoverage(ColumnarDataSet dataset)
+	{
+		if(!hasCoverage(dataset))
+		{
+			InstanceBitSet coverage = new InstanceBitSet(dataset.numberOfInstances());
+			
+			for(int i=0; i<dataset.numberOfInstances(); i++)
+				if(matches(dataset, i))
+					coverage.set(i);
+			
+			this.coverage = coverage;
+			this.coverageDataset = dataset;
+		}
+		
+		return coverage;
+	}
+	
+	/**
+	 * Checks if the instances of a columnar dataset covered by the rule are already known
+	 * 
+	 * @param dataset the dataset
+	 * 
+	 * @return true if getCoverage() does not need to evaluate the rule
+	 */
+	
+	public boolean hasCoverage(ColumnarDataSet dataset)
+	{
+		return coverage != null && coverageDataset == dataset && coverage.size() == dataset.numberOfInstances();
+	}
+	
+	/**
+	 * Sets the instances of a columnar dataset covered by the rule,
+	 * computed elsewhere for an equal antecedent
+	 * 
+	 * @param dataset the dataset
+	 * @param coverage the set of covered instances
+	 */
+	
+	public void setCoverage(ColumnarDataSet dataset, InstanceBitSet coverage)
+	{
+		this.coverage = coverage;
+		this.coverageDataset = dataset;
+	}
+	
+	/**
+	 * Checks if the rule covers an instance using the compiled antecedent
+	 * 
+	 * {@inheritDoc}
+	 */
+	
+	@Override
+	public Object covers(IInstance instance)
+	{
+		return matches(instance);
+	}
+	
 	/**
 	 * Implementation of copy()
 	 * 
@@ -97,6 +263,15 @@ public class CrispRule extends Rule
 		newRule.setConsequent(consequent);
 		if(fitness != null) newRule.setFitness(fitness);
 		
+		// The copied antecedent is equal, so the compiled form and the coverage can be shared
+		if(isCompiled)
+		{
+			newRule.compiled = compiled;
+			newRule.isCompiled = true;
+		}
+		newRule.coverage = coverage;
+		newRule.coverageDataset = coverageDataset;
+		
 		return newRule;
 	}
 	
@@ -1,11 +1,15 @@
 package net.sf.jclec.problem.classification.crisprule;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import net.sf.jclec.problem.classification.base.Rule;
 import net.sf.jclec.problem.classification.base.RuleBase;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
 import net.sf.jclec.problem.util.dataset.IDataset;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
 import net.sf.jclec.problem.util.dataset.instance.IInstance;
 import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
 
@@ -92,6 +96,12 @@ public class CrispRuleBase extends RuleBase
 	/**
 	 * Return the estimated values by the classifier to the dataset
 	 * 
+	 * The dataset is classified rule by rule: each rule is evaluated over the
+	 * instances that are not covered by the previous rules, which are tracked
+	 * with a bitset, and the instances that no rule covers get the default class.
+	 * The predictions are the same as the ones of the decision list applied to
+	 * each instance.
+	 * 
 	 * @param dataset the dataset
 	 * @return array of class predictions
 	 */
@@ -101,31 +111,78 @@ public class CrispRuleBase extends RuleBase
 		/** Get the dataset instances */
 		ArrayList<IInstance> instances = dataset.getInstances();
 		
-        int numInstances = instances.size();
-        int numRules = rules.size();
-        double [] result = new double[numInstances];
-		boolean cover = false;
-        
-        for(int i=0; i<numInstances; i++)
-        {
-        	for(int j=0; j<numRules; j++)
-			{	            		
-				if((Boolean) rules.get(j).covers(instances.get(i)))
+		int numInstances = instances.size();
+		double [] result = new double[numInstances];
+		
+		// Columns of the dataset, if it is stored by columns
+		double [][] columns = null;
+		if(dataset instanceof ColumnarDataSet)
+			columns = ((ColumnarDataSet) dataset).getColumns();
+		
+		// Instances not covered by the previous rules
+		InstanceBitSet unassigned = new InstanceBitSet(numInstances);
+		unassigned.setAll();
+		int numUnassigned = numInstances;
+		
+		for(int j=0; j<rules.size() && numUnassigned > 0; j++)
+		{
+			Rule rule = rules.get(j);
+			double consequent = rule.getConsequent();
+			
+			CompiledAntecedent compiled = null;
+			if(rule instanceof CrispRule)
+				compiled = ((CrispRule) rule).getCompiledAntecedent();
+			
+			for(int i = unassigned.nextSetBit(0); i >= 0; i = unassigned.nextSetBit(i+1))
+			{
+				boolean covered;
+				
+				if(compiled == null)
+					covered = (Boolean) rule.covers(instances.get(i));
+				else if(columns != null)
+					covered = compiled.covers(columns, i);
+				else
+					covered = compiled.covers(instances.get(i).getValues());
+				
+				if(covered)
 				{
-					result[i] = rules.get(j).getConsequent();
-					cover = true;
-					break;
+					result[i] = consequent;
+					unassigned.clear(i);
+					numUnassigned--;
 				}
 			}
+		}
 		
-			if(cover == false)
-				result[i] = defaultClass;
-			
-			cover = false;
-        }
-    	return result;
+		for(int i = unassigned.nextSetBit(0); i >= 0; i = unassigned.nextSetBit(i+1))
+			result[i] = defaultClass;
+		
+		return result;
 	}
 
+	/**
+	 * Removes the rules that cover the same instances of a dataset as a previous rule.
+	 * They never classify an instance of the dataset, as the previous rule is checked first.
+	 * 
+	 * @param dataset the dataset
+	 * @return number of rules removed
+	 */
+	
+	public int removeEquivalentRules(ColumnarDataSet dataset)
+	{
+		Set<InstanceBitSet> coverages = new HashSet<InstanceBitSet>();
+		List<Rule> keptRules = new ArrayList<Rule>(rules.size());
+		
+		for(Rule rule : rules)
+			if(!(rule instanceof CrispRule) || coverages.add(((CrispRule) rule).getCoverage(dataset)))
+				keptRules.add(rule);
+		
+		int removed = rules.size() - keptRules.size();
+		
+		rules = keptRules;
+		
+		return removed;
+	}
+	
 	/**
 	 *  Return the estimated value to the instance
 	 *  
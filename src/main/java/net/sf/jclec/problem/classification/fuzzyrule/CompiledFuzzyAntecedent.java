@@ -0,0 +1,272 @@
+package net.sf.jclec.problem.classification.fuzzyrule;
+
+import java.io.Serializable;
+
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.exprtree.IPrimitive;
+import net.sf.jclec.problem.classification.blocks.AttributeValue;
+import net.sf.jclec.problem.classification.blocks.fuzzy.Is;
+import net.sf.jclec.problem.classification.blocks.fuzzy.Maximum;
+import net.sf.jclec.problem.classification.blocks.fuzzy.MembershipFunction;
+import net.sf.jclec.problem.classification.blocks.fuzzy.Minimum;
+
+/**
+ * Compiled form of a fuzzy rule antecedent.<p/>
+ *
+ * The prefix ExprTree of a FuzzyRule (IS, AND and OR blocks over attributes and membership
+ * functions) is translated once into a tree of nodes that work on primitive values only.
+ *
+ * Besides the degree of a single instance, degrees() computes the degree of every instance of
+ * a dataset stored by columns: each membership function is evaluated once over the column of
+ * its attribute, and the T-norm (minimum) and T-conorm (maximum) are applied in place over the
+ * array of degrees, so the cost of a fuzzy antecedent is a few passes over the columns.
+ *
+ * The compile() method returns null when the antecedent contains a primitive that has no
+ * compiled counterpart; in that case the rule keeps using the stack interpreter.
+ *
+ */
+
+public abstract class CompiledFuzzyAntecedent implements Serializable
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = -2950183374409620519L;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Empty constructor
+	 */
+
+	protected CompiledFuzzyAntecedent()
+	{
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Obtains the degree in which the antecedent covers the instance with the given values
+	 *
+	 * @param values attribute values of the instance
+	 * @return the coverage degree
+	 */
+
+	public abstract double covers(double[] values);
+
+	/**
+	 * Obtains the degree in which the antecedent covers an instance stored by columns
+	 *
+	 * @param columns attribute columns of the dataset, indexed as columns[attribute][instance]
+	 * @param index instance index
+	 * @return the coverage degree
+	 */
+
+	public abstract double covers(double[][] columns, int index);
+
+	/**
+	 * Obtains the degree in which the antecedent covers the first instances of a dataset stored by columns
+	 *
+	 * @param columns attribute columns of the dataset, indexed as columns[attribute][instance]
+	 * @param numberOfInstances number of instances
+	 * @param degrees array where the coverage degrees are stored
+	 */
+
+	public abstract void degrees(double[][] columns, int numberOfInstances, double[] degrees);
+
+	/**
+	 * Compiles the antecedent of a fuzzy rule
+	 *
+	 * @param antecedent the prefix expression tree of the rule
+	 * @return the compiled antecedent, or null if the tree contains unsupported primitives
+	 */
+
+	public static CompiledFuzzyAntecedent compile(ExprTree antecedent)
+	{
+		if(antecedent == null || antecedent.size() == 0)
+			return null;
+
+		int [] cursor = new int [] {0};
+
+		CompiledFuzzyAntecedent compiled = compile(antecedent, cursor);
+
+		// The whole tree must have been consumed by a single expression
+		if(compiled == null || cursor[0] != antecedent.size())
+			return null;
+
+		return compiled;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Combines the degrees of this expression with an array of degrees
+	 *
+	 * @param columns attribute columns of the dataset, indexed as columns[attribute][instance]
+	 * @param numberOfInstances number of instances
+	 * @param degrees degrees to combine, replaced by the result
+	 * @param minimum true for the minimum (AND), false for the maximum (OR)
+	 */
+
+	protected void combine(double[][] columns, int numberOfInstances, double[] degrees, boolean minimum)
+	{
+		double [] aux = new double[numberOfInstances];
+
+		degrees(columns, numberOfInstances, aux);
+
+		for(int i = 0; i < numberOfInstances; i++)
+			degrees[i] = minimum ? Math.min(degrees[i], aux[i]) : Math.max(degrees[i], aux[i]);
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Compiles the fuzzy expression starting at the cursor position
+	 *
+	 * @param tree the expression tree
+	 * @param cursor current position, updated to the position following the expression
+	 * @return the compiled expression or null if it is not supported
+	 */
+
+	private static CompiledFuzzyAntecedent compile(ExprTree tree, int [] cursor)
+	{
+		if(cursor[0] >= tree.size())
+			return null;
+
+		IPrimitive block = tree.getBlock(cursor[0]++);
+
+		if(block instanceof Minimum || block instanceof Maximum)
+		{
+			CompiledFuzzyAntecedent left = compile(tree, cursor);
+			if(left == null) return null;
+			CompiledFuzzyAntecedent right = compile(tree, cursor);
+			if(right == null) return null;
+
+			return new BinaryNode(block instanceof Minimum, left, right);
+		}
+
+		if(block instanceof Is)
+		{
+			// IS pops the attribute value and then the membership function
+			if(cursor[0] + 1 >= tree.size())
+				return null;
+
+			IPrimitive attribute = tree.getBlock(cursor[0]++);
+			IPrimitive function = tree.getBlock(cursor[0]++);
+
+			if(!(attribute instanceof AttributeValue) || !(function instanceof MembershipFunction))
+				return null;
+
+			return new IsNode(((AttributeValue) attribute).getAttributeIndex(), (MembershipFunction) function);
+		}
+
+		return null;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Inner classes
+	/////////////////////////////////////////////////////////////////
+
+	/** Minimum (AND) or maximum (OR) of two expressions */
+
+	private static final class BinaryNode extends CompiledFuzzyAntecedent
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final boolean minimum;
+
+		private final CompiledFuzzyAntecedent left, right;
+
+		BinaryNode(boolean minimum, CompiledFuzzyAntecedent left, CompiledFuzzyAntecedent right)
+		{
+			this.minimum = minimum;
+			this.left = left;
+			this.right = right;
+		}
+
+		public double covers(double[] values)
+		{
+			return minimum ? Math.min(left.covers(values), right.covers(values)) : Math.max(left.covers(values), right.covers(values));
+		}
+
+		public double covers(double[][] columns, int index)
+		{
+			return minimum ? Math.min(left.covers(columns, index), right.covers(columns, index)) : Math.max(left.covers(columns, index), right.covers(columns, index));
+		}
+
+		public void degrees(double[][] columns, int numberOfInstances, double[] degrees)
+		{
+			// A membership function is combined in place, without an auxiliary array
+			if(left instanceof IsNode)
+			{
+				right.degrees(columns, numberOfInstances, degrees);
+				left.combine(columns, numberOfInstances, degrees, minimum);
+			}
+			else
+			{
+				left.degrees(columns, numberOfInstances, degrees);
+				right.combine(columns, numberOfInstances, degrees, minimum);
+			}
+		}
+	}
+
+	/** Compatibility degree of an attribute with a membership function */
+
+	private static final class IsNode extends CompiledFuzzyAntecedent
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int attribute;
+
+		private final MembershipFunction function;
+
+		IsNode(int attribute, MembershipFunction function)
+		{
+			this.attribute = attribute;
+			this.function = function;
+		}
+
+		public double covers(double[] values)
+		{
+			return function.compatibilityDegree(values[attribute]);
+		}
+
+		public double covers(double[][] columns, int index)
+		{
+			return function.compatibilityDegree(columns[attribute][index]);
+		}
+
+		public void degrees(double[][] columns, int numberOfInstances, double[] degrees)
+		{
+			function.compatibilityDegrees(columns[attribute], numberOfInstances, degrees);
+		}
+
+		protected void combine(double[][] columns, int numberOfInstances, double[] degrees, boolean minimum)
+		{
+			double [] column = columns[attribute];
+
+			if(minimum)
+			{
+				for(int i = 0; i < numberOfInstances; i++)
+					degrees[i] = Math.min(degrees[i], function.compatibilityDegree(column[i]));
+			}
+			else
+			{
+				for(int i = 0; i < numberOfInstances; i++)
+					degrees[i] = Math.max(degrees[i], function.compatibilityDegree(column[i]));
+			}
+		}
+	}
+}
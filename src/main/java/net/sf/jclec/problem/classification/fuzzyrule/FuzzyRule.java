@@ -7,6 +7,8 @@ import net.sf.jclec.problem.classification.base.Rule;
 import net.sf.jclec.problem.classification.blocks.AttributeValue;
 import net.sf.jclec.problem.classification.blocks.fuzzy.Maximum;
 import net.sf.jclec.problem.classification.blocks.fuzzy.Minimum;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
+import net.sf.jclec.problem.util.dataset.instance.ColumnarInstance;
 import net.sf.jclec.problem.util.dataset.instance.IInstance;
 import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
 
@@ -17,6 +19,9 @@ import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
  * This is based on the certainty of the membership functions on the given instance.
  * Therefore, the classify() method returns a double value representing the degree in which the rule covers the instance.
  * 
+ * The antecedent is compiled on demand into a CompiledFuzzyAntecedent, so covers() evaluates the rule over
+ * primitive values, and degrees() obtains the degrees of all the instances of a ColumnarDataSet column by column.
+ * 
  * 
  * 
  *  
@@ -39,6 +44,18 @@ public class FuzzyRule extends Rule
 	/////////////////////////////////////////////////////////////////
 	
 	private double certainty;
+	
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------- Internal variables
+	/////////////////////////////////////////////////////////////////
+
+	/** Compiled antecedent, built on first use */
+	
+	private transient CompiledFuzzyAntecedent compiled;
+	
+	/** The antecedent has been compiled (compiled is null if it is not supported), volatile to publish compiled to the other threads */
+	
+	private transient volatile boolean isCompiled;
 
 	/////////////////////////////////////////////////////////////////
 	// ------------------------------------------------- Constructors
@@ -100,6 +117,75 @@ public class FuzzyRule extends Rule
 		return (Double) covers(instance);
 	}
 	
+	/**
+	 * Sets rule antecedent and discards the compiled antecedent
+	 * 
+	 * {@inheritDoc}
+	 */
+	
+	@Override
+	public void setAntecedent(ExprTree antecedent) 
+	{
+		super.setAntecedent(antecedent);
+		compiled = null;
+		isCompiled = false;
+	}
+	
+	/**
+	 * Access to the compiled antecedent of the rule
+	 * 
+	 * @return the compiled antecedent, null if the antecedent cannot be compiled
+	 */
+	
+	public CompiledFuzzyAntecedent getCompiledAntecedent()
+	{
+		if(!isCompiled)
+		{
+			compiled = CompiledFuzzyAntecedent.compile(code);
+			isCompiled = true;
+		}
+		
+		return compiled;
+	}
+	
+	/**
+	 * Gets the coverage grade of the instance using the compiled antecedent
+	 * 
+	 * {@inheritDoc}
+	 */
+	
+	@Override
+	public Object covers(IInstance instance)
+	{
+		CompiledFuzzyAntecedent compiled = getCompiledAntecedent();
+		
+		if(compiled == null)
+			return super.covers(instance);
+		
+		if(instance instanceof ColumnarInstance)
+			return compiled.covers(((ColumnarInstance) instance).getColumns(), ((ColumnarInstance) instance).getIndex());
+		else
+			return compiled.covers(instance.getValues());
+	}
+	
+	/**
+	 * Gets the coverage grades of all the instances of a columnar dataset
+	 * 
+	 * @param dataset the dataset
+	 * @param degrees array where the coverage grades are stored, with a length of at least the number of instances
+	 */
+	
+	public void degrees(ColumnarDataSet dataset, double[] degrees)
+	{
+		CompiledFuzzyAntecedent compiled = getCompiledAntecedent();
+		
+		if(compiled != null)
+			compiled.degrees(dataset.getColumns(), dataset.numberOfInstances(), degrees);
+		else
+			for(int i=0; i<dataset.numberOfInstances(); i++)
+				degrees[i] = (Double) super.covers(dataset.getInstances().get(i));
+	}
+	
 	/**
 	 * Implementation of copy() method
 	 */
@@ -111,8 +197,16 @@ public class FuzzyRule extends Rule
 		
 		newRule.setAntecedent(code.copy());
 		newRule.setConsequent(consequent);
+		newRule.setCertainty(certainty);
 		if(fitness != null) newRule.setFitness(fitness);
 		
+		// The copied antecedent is equal, so the compiled form can be shared
+		if(isCompiled)
+		{
+			newRule.compiled = compiled;
+			newRule.isCompiled = true;
+		}
+		
 		return newRule;
 	}
 	
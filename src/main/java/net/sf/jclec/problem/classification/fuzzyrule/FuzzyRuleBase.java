@@ -1,10 +1,12 @@
 package net.sf.jclec.problem.classification.fuzzyrule;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import net.sf.jclec.problem.classification.base.Rule;
 import net.sf.jclec.problem.classification.base.RuleBase;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
 import net.sf.jclec.problem.util.dataset.IDataset;
 import net.sf.jclec.problem.util.dataset.instance.IInstance;
 import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
@@ -18,6 +20,7 @@ import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
  *    The classify() method classifies a particular instance or a complete dataset and returns the class predictions for the instances.
  *    Unlike crisp rules, the fuzzy rules covers the instances with a particular coverage grade.
  *    The higher the grade is the more confidence that the rule covers the instance.
+ *    A ColumnarDataSet is classified rule by rule, obtaining the grades of each fuzzy rule column by column.
  * 
  * 
  * 
@@ -81,6 +84,9 @@ public class FuzzyRuleBase extends RuleBase
 	 */
 	public double[] classify(IDataset dataset) 
 	{
+		if(dataset instanceof ColumnarDataSet)
+			return classify((ColumnarDataSet) dataset);
+		
 		/** Get the dataset instances */
 		ArrayList<IInstance> instances = dataset.getInstances();
 		
@@ -174,4 +180,50 @@ public class FuzzyRuleBase extends RuleBase
 		
 		return result;
 	}
+	
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Return the estimated values by the classifier to a columnar dataset.
+	 * The rules are applied in order to all the instances, so an instance gets
+	 * the consequent of the first rule with the maximum coverage as before.
+	 * 
+	 * @param dataset the dataset
+	 * @return array of coverage values
+	 */
+	
+	private double[] classify(ColumnarDataSet dataset)
+	{
+		int numInstances = dataset.numberOfInstances();
+		int numRules = rules.size();
+		double [] result = new double[numInstances];
+		double [] coverage = new double[numInstances];
+		double [] degrees = new double[numInstances];
+		
+		Arrays.fill(result, getDefaultClass());
+		
+		for(int j = 0; j < numRules; j++)
+		{
+			Rule rule = rules.get(j);
+			
+			if(rule instanceof FuzzyRule)
+				((FuzzyRule) rule).degrees(dataset, degrees);
+			else
+				for(int i = 0; i < numInstances; i++)
+					degrees[i] = (Double) rule.covers(dataset.getInstances().get(i));
+			
+			for(int i = 0; i < numInstances; i++)
+			{
+				if(degrees[i] > coverage[i])
+				{
+					coverage[i] = degrees[i];
+					result[i] = rule.getConsequent();
+				}
+			}
+		}
+		
+		return result;
+	}
 }
\ No newline at end of file
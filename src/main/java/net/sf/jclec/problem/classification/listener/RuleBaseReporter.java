@@ -8,9 +8,11 @@ import java.text.DecimalFormat;
 import java.util.List;
 
 import net.sf.jclec.AlgorithmEvent;
+import net.sf.jclec.problem.classification.ICachedEvaluator;
 import net.sf.jclec.problem.classification.IClassifier;
 import net.sf.jclec.problem.classification.base.ClassificationAlgorithm;
 import net.sf.jclec.problem.classification.base.ClassificationReporter;
+import net.sf.jclec.problem.classification.base.FitnessCache;
 import net.sf.jclec.problem.classification.base.Rule;
 import net.sf.jclec.problem.classification.base.RuleBase;
 import net.sf.jclec.problem.util.dataset.FileDataset;
@@ -129,6 +131,13 @@ public class RuleBaseReporter extends ClassificationReporter
 			trainFile.write("File name: " + ((FileDataset) algorithm.getTrainSet()).getFileName());
 			trainFile.write(("\nRuntime (s): " + (((double)(endTime-initTime)) / 1000.0)));
 			trainFile.write("\nMemory Usage(bytes): " + (afterUsedMem-beforeUsedMem));
+			if(algorithm.getEvaluator() instanceof ICachedEvaluator && ((ICachedEvaluator) algorithm.getEvaluator()).getFitnessCache() != null)
+			{
+				FitnessCache cache = ((ICachedEvaluator) algorithm.getEvaluator()).getFitnessCache();
+				trainFile.write("\nFitness cache hits: " + cache.getHits() + ", misses: " + cache.getMisses());
+			}
+			if(algorithm.isRemoveDuplicates())
+				trainFile.write("\nDuplicates removed: " + algorithm.getTotalDuplicates());
 			trainFile.write("\nNumber of rules: " + (classificationRules.size()+1));
 			//trainFile.write("\nNumber of conditions: "+ conditions);
 			//trainFile.write("\nAverage number of conditions per rule: " + (double)conditions/((double)classificationRules.size()+1.0));
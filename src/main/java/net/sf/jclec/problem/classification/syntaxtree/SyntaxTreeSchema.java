@@ -1,5 +1,13 @@
 package net.sf.jclec.problem.classification.syntaxtree;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import net.sf.jclec.exprtree.IPrimitive;
 import net.sf.jclec.problem.classification.blocks.RandomConstantOfContinuousValues;
 import net.sf.jclec.problem.classification.blocks.RandomConstantOfDiscreteValues;
@@ -15,8 +23,11 @@ import net.sf.jclec.util.random.IRandGen;
  * Extends the SyntaxTreeSchema and defines the terminals map for the classification problem
  * based on the terminals generated from the metadata of the dataset.
  * 
- * 
- * 
+ * The grammar is compiled the first time a branch is filled into tables with the number of
+ * derivations of every symbol, production and partition up to the maximum derivation size.
+ * The branches are then generated iteratively from the tables, with the same probabilities
+ * and the same random numbers as the recursive generation of the schema. If the numbers
+ * of derivations do not fit in a long, the recursive generation is used.
  *  
  * 
  * 
@@ -32,6 +43,18 @@ public class SyntaxTreeSchema extends net.sf.jclec.syntaxtree.SyntaxTreeSchema
 	
 	private static final long serialVersionUID = -8548482239030974796L;
 	
+	/** Kinds of terminal */
+
+	private static final int SHARED_TERMINAL = 0, CONTINUOUS_CONSTANT = 1, DISCRETE_CONSTANT = 2, MEMBERSHIP_FUNCTION = 3;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------- Internal variables
+	/////////////////////////////////////////////////////////////////
+
+	/** Derivation tables of the grammar, built the first time a branch is filled */
+
+	private transient DerivationTables tables;
+
 	/////////////////////////////////////////////////////////////////
 	// ------------------------- Overwriting SyntaxTreeSchema methods
 	/////////////////////////////////////////////////////////////////
@@ -40,37 +63,126 @@ public class SyntaxTreeSchema extends net.sf.jclec.syntaxtree.SyntaxTreeSchema
 	 * {@inheritDoc}
 	 */
 	
+	public void setMaxDerivSize(int maxDerivSize)
+	{
+		super.setMaxDerivSize(maxDerivSize);
+		tables = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+
+	public void setTerminals(TerminalNode[] terminals)
+	{
+		super.setTerminals(terminals);
+		tables = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+
+	public void setNonTerminals(NonTerminalNode[] nonTerminals)
+	{
+		super.setNonTerminals(nonTerminals);
+		tables = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+
 	public void fillSyntaxBranch(SyntaxTree owner, String symbol, int nOfDer, IRandGen randgen)
 	{
-		if (isTerminal(symbol)) 
+		DerivationTables tables = this.tables;
+
+		if (tables == null)
+			this.tables = tables = new DerivationTables();
+
+		Integer symbolId = tables.complete ? tables.symbolIds.get(symbol) : null;
+
+		if (symbolId == null)
 		{
-			// If the selected symbol is terminal
-			
-			if(terminalsMap.get(symbol).getCode() instanceof RandomConstantOfContinuousValues )
+			expandSyntaxBranch(owner, symbol, nOfDer, randgen);
+			return;
+		}
+
+		// Pending symbols and their number of derivations, in reverse order
+		int [] symbols = new int[maxDerivSize + 8];
+		int [] derivations = new int[maxDerivSize + 8];
+		int top = 0;
+
+		symbols[top] = symbolId;
+		derivations[top++] = nOfDer;
+
+		while (top > 0)
+		{
+			int symbolIndex = symbols[--top];
+			int derivSize = derivations[top];
+
+			if (symbolIndex < tables.numberOfTerminals)
 			{
-				TerminalNode terminalAux = new TerminalNode(symbol, new RandomConstantOfContinuousValues(randgen));
-				((RandomConstantOfContinuousValues) terminalAux.getCode()).setInterval(((RandomConstantOfContinuousValues)terminalsMap.get(symbol).getCode()).getInterval());
-				((RandomConstantOfContinuousValues) terminalAux.getCode()).initializeValue();
-				owner.addNode(terminalAux);
+				owner.addNode(createTerminal(tables.terminals[symbolIndex], tables.terminalKinds[symbolIndex], randgen));
+				continue;
 			}
-			else if(terminalsMap.get(symbol).getCode() instanceof RandomConstantOfDiscreteValues )
+
+			if (derivSize < 1 || derivSize > maxDerivSize + 1)
 			{
-				TerminalNode terminalAux = new TerminalNode(symbol, new RandomConstantOfDiscreteValues(randgen));
-				((RandomConstantOfDiscreteValues) terminalAux.getCode()).setInterval(((RandomConstantOfDiscreteValues)terminalsMap.get(symbol).getCode()).getInterval());
-				((RandomConstantOfDiscreteValues) terminalAux.getCode()).initializeValue();
-				owner.addNode(terminalAux);
-				
+				// Out of the tables
+				expandSyntaxBranch(owner, tables.symbolNames[symbolIndex], derivSize, randgen);
+				continue;
 			}
-			else if(terminalsMap.get(symbol).getCode() instanceof MembershipFunction )
+
+			int production = tables.selectProduction(symbolIndex, derivSize - 1, randgen);
+
+			if (production < 0)
 			{
-				IPrimitive membershipFunction = terminalsMap.get(symbol).getCode().copy();
-				((MembershipFunction) membershipFunction).setRandgen(randgen);
-				((MembershipFunction) membershipFunction).initializeLabel();
-				TerminalNode terminalAux = new TerminalNode(symbol, membershipFunction);
-				owner.addNode(terminalAux);
+				symbols[top] = symbolIndex;
+				derivations[top++] = derivSize - 1;
+				continue;
 			}
-			else
-				owner.addNode(getTerminal(symbol));
+
+			owner.addNode(tables.productions[production]);
+
+			int [] productionSymbols = tables.productionSymbols[production];
+			int [] partition = tables.selectPartition(production, derivSize - 1, randgen);
+
+			if (top + productionSymbols.length > symbols.length)
+			{
+				symbols = Arrays.copyOf(symbols, 2 * (top + productionSymbols.length));
+				derivations = Arrays.copyOf(derivations, symbols.length);
+			}
+
+			for (int i = productionSymbols.length - 1; i >= 0; i--)
+			{
+				symbols[top] = productionSymbols[i];
+				derivations[top++] = partition[i];
+			}
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Fills a branch recursively, computing the number of derivations with the schema
+	 *
+	 * @param owner the syntax tree
+	 * @param symbol root symbol of the branch
+	 * @param nOfDer number of derivations of the branch
+	 * @param randgen random generator
+	 */
+
+	protected void expandSyntaxBranch(SyntaxTree owner, String symbol, int nOfDer, IRandGen randgen)
+	{
+		if (isTerminal(symbol)) 
+		{
+			// If the selected symbol is terminal
+			TerminalNode terminal = getTerminal(symbol);
+			
+			owner.addNode(createTerminal(terminal, terminalKind(terminal), randgen));
 		} 
 		else {
 			// If the selected symbol is non terminal
@@ -87,10 +199,418 @@ public class SyntaxTreeSchema extends net.sf.jclec.syntaxtree.SyntaxTreeSchema
 				int selProdSize = selectedPartition.length;
 				
 				for (int i=0; i<selProdSize; i++) 
-					fillSyntaxBranch(owner, selectedProduction.getProduction()[i], selectedPartition[i], randgen);
+					expandSyntaxBranch(owner, selectedProduction.getProduction()[i], selectedPartition[i], randgen);
 			}
 			else 
-				fillSyntaxBranch(owner, symbol, nOfDer-1, randgen);		
+				expandSyntaxBranch(owner, symbol, nOfDer-1, randgen);
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Kind of a terminal of the schema
+	 *
+	 * @param terminal the terminal
+	 * @return kind of terminal
+	 */
+
+	private static int terminalKind(TerminalNode terminal)
+	{
+		if (terminal.getCode() instanceof RandomConstantOfContinuousValues)
+			return CONTINUOUS_CONSTANT;
+		if (terminal.getCode() instanceof RandomConstantOfDiscreteValues)
+			return DISCRETE_CONSTANT;
+		if (terminal.getCode() instanceof MembershipFunction)
+			return MEMBERSHIP_FUNCTION;
+		return SHARED_TERMINAL;
+	}
+
+	/**
+	 * Creates the node of a terminal of the schema. The random constants and membership
+	 * functions get a new value, the other terminals are shared
+	 *
+	 * @param terminal the terminal of the schema
+	 * @param kind kind of terminal
+	 * @param randgen random generator
+	 * @return the node
+	 */
+
+	private static TerminalNode createTerminal(TerminalNode terminal, int kind, IRandGen randgen)
+	{
+		switch (kind)
+		{
+			case CONTINUOUS_CONSTANT:
+			{
+				RandomConstantOfContinuousValues constant = new RandomConstantOfContinuousValues(randgen);
+				constant.setInterval(((RandomConstantOfContinuousValues) terminal.getCode()).getInterval());
+				constant.initializeValue();
+				return new TerminalNode(terminal.getSymbol(), constant);
+			}
+			case DISCRETE_CONSTANT:
+			{
+				RandomConstantOfDiscreteValues constant = new RandomConstantOfDiscreteValues(randgen);
+				constant.setInterval(((RandomConstantOfDiscreteValues) terminal.getCode()).getInterval());
+				constant.initializeValue();
+				return new TerminalNode(terminal.getSymbol(), constant);
+			}
+			case MEMBERSHIP_FUNCTION:
+			{
+				IPrimitive membershipFunction = terminal.getCode().copy();
+				((MembershipFunction) membershipFunction).setRandgen(randgen);
+				((MembershipFunction) membershipFunction).initializeLabel();
+				return new TerminalNode(terminal.getSymbol(), membershipFunction);
+			}
+			default:
+				return terminal;
+		}
+	}
+
+	/**
+	 * Checks if total * r < bound, computing the product exactly when the
+	 * floating point product is too close to the bound
+	 *
+	 * @param total total number of derivations
+	 * @param r random number
+	 * @param bound cumulative number of derivations
+	 * @return true if the product is lower than the bound
+	 */
+
+	private static boolean isBelow(long total, double r, long bound)
+	{
+		double product = total * r;
+		double error = 2 * (Math.ulp(product) + Math.ulp((double) bound));
+
+		if (product < bound - error)
+			return true;
+		if (product > bound + error)
+			return false;
+
+		return new BigDecimal(total).multiply(new BigDecimal(r)).compareTo(new BigDecimal(bound)) < 0;
+	}
+
+	/**
+	 * Selects the first entry of a cumulative table whose number of derivations is higher than
+	 * total * r, the same choice of the selection with BigDecimal of the schema
+	 *
+	 * @param cumulative cumulative numbers of derivations
+	 * @param randgen random generator
+	 * @return index of the entry, -1 if there are no derivations
+	 */
+
+	private static int select(long [] cumulative, IRandGen randgen)
+	{
+		double r = randgen.raw();
+
+		if (cumulative.length == 0)
+			return -1;
+
+		long total = cumulative[cumulative.length - 1];
+
+		int low = 0, high = cumulative.length;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (isBelow(total, r, cumulative[middle]))
+				high = middle;
+			else
+				low = middle + 1;
+		}
+
+		return low < cumulative.length ? low : -1;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Inner classes
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Number of derivations of the symbols, productions and partitions of the grammar,
+	 * for every number of derivations up to the maximum derivation size
+	 */
+
+	private final class DerivationTables
+	{
+		/** Tables cover the whole grammar and all the numbers fit in a long */
+
+		final boolean complete;
+
+		/** Symbol ids, the terminals go first */
+
+		final Map<String, Integer> symbolIds = new HashMap<String, Integer>();
+
+		/** Symbol of each id */
+
+		final String [] symbolNames;
+
+		/** Number of terminals */
+
+		final int numberOfTerminals;
+
+		/** Terminal of each terminal id */
+
+		final TerminalNode [] terminals;
+
+		/** Kind of each terminal */
+
+		final int [] terminalKinds;
+
+		/** Productions of the schema */
+
+		final NonTerminalNode [] productions;
+
+		/** Symbol ids of each production */
+
+		final int [][] productionSymbols;
+
+		/** Productions of each non terminal, by symbol id - numberOfTerminals */
+
+		final int [][] symbolProductions;
+
+		/** Cumulative derivations of the productions of each non terminal, by derivations of the production */
+
+		final long [][][] productionCumulatives;
+
+		/** Partitions with derivations of each production, by derivations of the production */
+
+		final int [][][][] partitions;
+
+		/** Cumulative derivations of the partitions of each production */
+
+		final long [][][] partitionCumulatives;
+
+		/**
+		 * Compiles the grammar of the schema
+		 */
+
+		DerivationTables()
+		{
+			TerminalNode [] terminals = getTerminals();
+			NonTerminalNode [] productions = getNonTerminals();
+
+			List<String> names = new ArrayList<String>();
+
+			for (TerminalNode terminal : terminals)
+				if (!symbolIds.containsKey(terminal.getSymbol()))
+				{
+					symbolIds.put(terminal.getSymbol(), names.size());
+					names.add(terminal.getSymbol());
+				}
+
+			numberOfTerminals = names.size();
+
+			for (NonTerminalNode production : productions)
+				if (!symbolIds.containsKey(production.getSymbol()))
+				{
+					symbolIds.put(production.getSymbol(), names.size());
+					names.add(production.getSymbol());
+				}
+
+			symbolNames = names.toArray(new String[names.size()]);
+
+			this.terminals = new TerminalNode[numberOfTerminals];
+			terminalKinds = new int[numberOfTerminals];
+
+			for (int i = 0; i < numberOfTerminals; i++)
+			{
+				this.terminals[i] = getTerminal(symbolNames[i]);
+				terminalKinds[i] = terminalKind(this.terminals[i]);
+			}
+
+			this.productions = productions;
+			productionSymbols = new int[productions.length][];
+
+			boolean resolved = true;
+			int [] numberOfProductions = new int[symbolNames.length - numberOfTerminals];
+
+			for (int p = 0; p < productions.length; p++)
+			{
+				String [] production = productions[p].getProduction();
+				productionSymbols[p] = new int[production.length];
+				resolved &= production.length > 0;
+
+				for (int i = 0; i < production.length; i++)
+				{
+					Integer id = symbolIds.get(production[i]);
+					resolved &= id != null;
+					productionSymbols[p][i] = id == null ? -1 : id;
+				}
+
+				numberOfProductions[symbolIds.get(productions[p].getSymbol()) - numberOfTerminals]++;
+			}
+
+			symbolProductions = new int[numberOfProductions.length][];
+
+			for (int s = 0; s < numberOfProductions.length; s++)
+				symbolProductions[s] = new int[numberOfProductions[s]];
+
+			Arrays.fill(numberOfProductions, 0);
+
+			for (int p = 0; p < productions.length; p++)
+			{
+				int s = symbolIds.get(productions[p].getSymbol()) - numberOfTerminals;
+				symbolProductions[s][numberOfProductions[s]++] = p;
+			}
+
+			int maxDerivSize = getMaxDerivSize();
+
+			productionCumulatives = new long[symbolProductions.length][maxDerivSize + 1][];
+			partitions = new int[productions.length][maxDerivSize + 1][][];
+			partitionCumulatives = new long[productions.length][maxDerivSize + 1][];
+
+			complete = resolved && maxDerivSize >= 0 && compile(maxDerivSize);
+		}
+
+		/**
+		 * Computes the number of derivations of the symbols and fills the tables
+		 *
+		 * @param maxDerivSize maximum derivation size
+		 * @return true if all the numbers fit in a long
+		 */
+
+		private boolean compile(int maxDerivSize)
+		{
+			BigInteger limit = BigInteger.valueOf(Long.MAX_VALUE);
+
+			BigInteger [][] symbolDerivations = new BigInteger[symbolNames.length][maxDerivSize + 1];
+			BigInteger [][] productionDerivations = new BigInteger[productions.length][maxDerivSize + 1];
+
+			for (int n = 0; n <= maxDerivSize; n++)
+			{
+				// A terminal has one derivation of size 0, a non terminal needs one more than its production
+				for (int s = 0; s < symbolNames.length; s++)
+				{
+					BigInteger derivations = BigInteger.ZERO;
+
+					if (s < numberOfTerminals)
+						derivations = n == 0 ? BigInteger.ONE : BigInteger.ZERO;
+					else if (n > 0)
+						for (int p : symbolProductions[s - numberOfTerminals])
+							derivations = derivations.add(productionDerivations[p][n - 1]);
+
+					symbolDerivations[s][n] = derivations;
+				}
+
+				for (int p = 0; p < productions.length; p++)
+				{
+					List<int[]> partitions = new ArrayList<int[]>();
+					List<BigInteger> counts = new ArrayList<BigInteger>();
+
+					addPartitions(productionSymbols[p], 0, new int[productionSymbols[p].length], n, BigInteger.ONE, symbolDerivations, partitions, counts);
+
+					long [] cumulative = new long[counts.size()];
+					BigInteger total = BigInteger.ZERO;
+
+					for (int j = 0; j < cumulative.length; j++)
+					{
+						total = total.add(counts.get(j));
+
+						if (total.compareTo(limit) > 0)
+							return false;
+
+						cumulative[j] = total.longValue();
+					}
+
+					productionDerivations[p][n] = total;
+					this.partitions[p][n] = partitions.toArray(new int[partitions.size()][]);
+					partitionCumulatives[p][n] = cumulative;
+				}
+
+				for (int s = 0; s < symbolProductions.length; s++)
+				{
+					int [] symbolProductions = this.symbolProductions[s];
+					long [] cumulative = new long[symbolProductions.length];
+					BigInteger total = BigInteger.ZERO;
+
+					for (int j = 0; j < symbolProductions.length; j++)
+					{
+						total = total.add(productionDerivations[symbolProductions[j]][n]);
+
+						if (total.compareTo(limit) > 0)
+							return false;
+
+						cumulative[j] = total.longValue();
+					}
+
+					productionCumulatives[s][n] = cumulative;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Adds the partitions of a number of derivations among the symbols of a production
+		 * that have derivations, in the order of the partitions of the schema
+		 *
+		 * @param symbols symbol ids of the production
+		 * @param i current symbol
+		 * @param partition current partition
+		 * @param remaining derivations not assigned to the previous symbols
+		 * @param count derivations of the previous symbols
+		 * @param symbolDerivations derivations of the symbols
+		 * @param partitions partitions found
+		 * @param counts derivations of the partitions found
+		 */
+
+		private void addPartitions(int [] symbols, int i, int [] partition, int remaining, BigInteger count, BigInteger [][] symbolDerivations, List<int[]> partitions, List<BigInteger> counts)
+		{
+			int first = i == symbols.length - 1 ? remaining : 0;
+
+			for (int n = first; n <= remaining; n++)
+			{
+				BigInteger derivations = symbolDerivations[symbols[i]][n];
+
+				if (derivations.signum() == 0)
+					continue;
+
+				partition[i] = n;
+
+				if (i == symbols.length - 1)
+				{
+					partitions.add(partition.clone());
+					counts.add(count.multiply(derivations));
+				}
+				else
+					addPartitions(symbols, i + 1, partition, remaining - n, count.multiply(derivations), symbolDerivations, partitions, counts);
+			}
+		}
+
+		/**
+		 * Selects a production of a non terminal
+		 *
+		 * @param symbol symbol id
+		 * @param derivSize number of derivations of the production
+		 * @param randgen random generator
+		 * @return the production, -1 if no production has that number of derivations
+		 */
+
+		int selectProduction(int symbol, int derivSize, IRandGen randgen)
+		{
+			int s = symbol - numberOfTerminals;
+			int j = select(productionCumulatives[s][derivSize], randgen);
+
+			return j < 0 ? -1 : symbolProductions[s][j];
+		}
+
+		/**
+		 * Selects a partition of the derivations of a production among its symbols
+		 *
+		 * @param production the production
+		 * @param derivSize number of derivations of the production
+		 * @param randgen random generator
+		 * @return derivations of each symbol, null if there are no derivations
+		 */
+
+		int [] selectPartition(int production, int derivSize, IRandGen randgen)
+		{
+			int j = select(partitionCumulatives[production][derivSize], randgen);
+
+			return j < 0 ? null : partitions[production][derivSize][j];
 		}
 	}
 }
\ No newline at end of file
@@ -1,9 +1,5 @@
 package net.sf.jclec.problem.util.dataset;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,10 +7,8 @@ import java.util.StringTokenizer;
 
 import net.sf.jclec.problem.util.dataset.attribute.AttributeType;
 import net.sf.jclec.problem.util.dataset.attribute.CategoricalAttribute;
-import net.sf.jclec.problem.util.dataset.attribute.IAttribute;
 import net.sf.jclec.problem.util.dataset.attribute.NumericalAttribute;
 import net.sf.jclec.problem.util.dataset.instance.IInstance;
-import net.sf.jclec.problem.util.dataset.instance.Instance;
 import net.sf.jclec.problem.util.dataset.metadata.ClassificationMetadata;
 import net.sf.jclec.util.range.Closure;
 import net.sf.jclec.util.range.Interval;
@@ -68,13 +62,6 @@ public class ArffDataSet extends FileDataset {
 	/** Symbol which represents the separation between values */
 	
 	protected String separationValue;
-
-	/** Buffer Instance */
-	
-	protected String bufferInstance = new String();
-
-	/** Private cursor */
-	private Instance cursorInstance;
 	
 	/////////////////////////////////////////////////////////////////
 	// -------------------------------------------------- Constructor
@@ -96,56 +83,14 @@ public class ArffDataSet extends FileDataset {
 	/**
 	 * Load instances from the data set
 	 * 
-	 * Open dataset, obtain metadata, read instances, close dataset
+	 * The file is read in a single pass, see loadColumns()
 	 */
 	
 	public void loadInstances()
 	{		
 		try {
 			
-			open();
-			
-            instances = new ArrayList<IInstance>();
-            
-            reset();
-            
-            while(next())
-            {
-            	instances.add(cursorInstance.copy());
-            }
-            
-            setInstances(instances);
-            
-            close();
-            
-            double[] minValues = new double[metadata.numberOfAttributes()-1];
-            double[] maxValues = new double[metadata.numberOfAttributes()-1];
-            
-            for(int i = 0; i < minValues.length; i++)
-            {
-            	minValues[i] = Double.MAX_VALUE;
-            	maxValues[i] = -Double.MAX_VALUE;
-            }
-            
-            for(IInstance instance : instances)
-            {
-            	for(int i = 0; i < minValues.length; i++)
-            	{
-            		double value = instance.getValue(i);
-            		
-            		if(value < minValues[i])
-            			minValues[i] = value;
-            		if(value > maxValues[i])
-            			maxValues[i] = value;
-            	}
-            }
-            
-            for(int i = 0; i < minValues.length; i++)
-            	if(metadata.getAttribute(i).getType() == AttributeType.Numerical)
-            	{
-            		Interval interval = new Interval(minValues[i], maxValues[i], Closure.ClosedClosed);
-            		((NumericalAttribute) metadata.getAttribute(i)).setInterval(interval);
-            	}
+            setInstances(createInstances(loadColumns()));
         }
 		catch (Exception e) 
         {
@@ -187,188 +132,104 @@ public class ArffDataSet extends FileDataset {
 	}
 	
 	/////////////////////////////////////////////////////////////////
-	// ---------------------------------------------- Private Methods
+	// ---------------------------------------------- Package Methods
 	/////////////////////////////////////////////////////////////////
 	
 	/**
-	 * Opens the dataset and obtains the metadata
-	 */
-	
-	private void open()
-	{
-		// Generate the specification from header of data source file
-		obtainMetadata(fileName);
-	}
-	
-	/**
-	 * Resets the dataset cursor to the beginning
+	 * Reads the dataset file in a single pass: the header into the metadata
+	 * and the data section into columns. The intervals of the numerical
+	 * attributes are set to the range of their values.
+	 * 
+	 * @return the values, indexed as columns[attribute][instance]
+	 * @throws IOException if the file cannot be read
 	 */
 	
-	private void reset()
+	double[][] loadColumns() throws IOException
 	{
-		try {
-			fileReader.close();
-			fileReader = new BufferedReader(new FileReader(new File(fileName)));
-
-			//Read until finding the sentence @DATA
-			String line = ((BufferedReader) fileReader).readLine();
-			while (!line.equalsIgnoreCase(ARFF_DATA)){
-				line = ((BufferedReader) fileReader).readLine();
-			}
-			bufferInstance = ((BufferedReader) fileReader).readLine();
+		DataFileReader reader = new DataFileReader(fileName);
 		
-			while(bufferInstance.startsWith(commentedValue) || bufferInstance.equalsIgnoreCase("")){
-				bufferInstance = ((BufferedReader) fileReader).readLine();
-			}
+		obtainMetadata(reader);
 		
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (Exception e){
-			e.printStackTrace();
-		}
-	
-	}
-	
-	/**
-	 * Reads the next instance
-	 */
-	
-	private boolean next() throws Exception
-	{
-		if(bufferInstance != null)
-		{
-			try{
-				//Get the attributes of this instance
-				StringTokenizer token = new StringTokenizer(bufferInstance, separationValue);
-				int numAttributes = 0;
-				ArrayList<Double> values = new ArrayList<Double>();
-			
-				while(token.hasMoreTokens()){
-					IAttribute attribute = metadata.getAttribute(numAttributes);
-					double value = attribute.parse(token.nextToken().trim());
-					values.add(value);
-								
-					numAttributes++;
-				}
-				
-				cursorInstance = new Instance(numAttributes);
+		double[][] columns = reader.readColumns(metadata, separationValue.charAt(0), commentedValue.charAt(0));
+		
+		for(int i = 0; i < metadata.numberOfAttributes()-1; i++)
+			if(metadata.getAttribute(i).getType() == AttributeType.Numerical)
+			{
+				double minValue = Double.MAX_VALUE;
+				double maxValue = -Double.MAX_VALUE;
 				
-				for(int i = 0; i < numAttributes; i++)
-					cursorInstance.setValue(i,values.get(i));
+				for(double value : columns[i])
+				{
+					if(value < minValue)
+						minValue = value;
+					if(value > maxValue)
+						maxValue = value;
+				}
 				
-				prepareNextInstance();
-			
-			}catch(Exception e)
-			{
-				e.printStackTrace();
+				Interval interval = new Interval(minValue, maxValue, Closure.ClosedClosed);
+				((NumericalAttribute) metadata.getAttribute(i)).setInterval(interval);
 			}
-			
-			return true;
-		}
-		else
-			return false;
+		
+		return columns;
 	}
 	
-	/**
-	 * Closes the dataset file
-	 */
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private Methods
+	/////////////////////////////////////////////////////////////////
 	
-	private void close() throws Exception {
-		try {
-			fileReader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
-
 	/**
 	 * Generate the dataset specification
 	 *  
-	 * @param fileName Name of data source file
+	 * @param reader Reader of the data source file, positioned at the beginning
+	 * @throws IOException if the file does not have a data section
 	 */
 	
-	private void obtainMetadata(String fileName)
-	{
-		File file = new File(fileName);
-		
+	private void obtainMetadata(DataFileReader reader) throws IOException
+	{		
 		metadata = new ClassificationMetadata();
 		
-		try {
-			
-			fileReader = new BufferedReader(new FileReader(file));
-			
-			//Read until finding the sentence @DATA
-			String line = ((BufferedReader) fileReader).readLine();
-			StringTokenizer elementLine = new StringTokenizer(line);
-			String element = elementLine.nextToken();
+		//Read until finding the sentence @DATA
+		String line = reader.readLine();
+		StringTokenizer elementLine = new StringTokenizer(line);
+		String element = elementLine.nextToken();
+		
+		while (!element.equalsIgnoreCase(ARFF_DATA)){
 			
-			while (!element.equalsIgnoreCase(ARFF_DATA)){
+			if(element.equalsIgnoreCase(ARFF_ATTRIBUTE)){
+				//The next attribute	
+				String name = elementLine.nextToken();
+				String type = elementLine.nextToken();
 				
-				if(element.equalsIgnoreCase(ARFF_ATTRIBUTE)){
-					//The next attribute	
-					String name = elementLine.nextToken();
-					String type = elementLine.nextToken();
-					
-					if(type.equalsIgnoreCase("REAL") || type.equalsIgnoreCase("NUMERIC")){
-						addAttributeToSpecification(type, line, name);
-					}
-					else
-						addAttributeToSpecification("STRING", line, name);
-					
-				}
-				if(element.equalsIgnoreCase(ARFF_RELATION)){
-					setName(elementLine.nextToken());
+				if(type.equalsIgnoreCase("REAL") || type.equalsIgnoreCase("NUMERIC")){
+					addAttributeToSpecification(type, line, name);
 				}
-		
-				//Next line of the file
-				line = ((BufferedReader) fileReader).readLine();
-				while(line.startsWith(commentedValue) || line.equalsIgnoreCase(""))
-					line = ((BufferedReader) fileReader).readLine();
-				
-				int index = line.indexOf('[');
-				if(index != -1)
-				line = line.substring(0,index) + " [" + line.substring(index+1);
-				
-				index = line.indexOf('{');
-				if(index != -1)
-				line = line.substring(0,index) + " {" + line.substring(index+1);
+				else
+					addAttributeToSpecification("STRING", line, name);
 				
-				elementLine = new StringTokenizer(line);
-				element = elementLine.nextToken();
+			}
+			if(element.equalsIgnoreCase(ARFF_RELATION)){
+				setName(elementLine.nextToken());
+			}
+		
+			//Next line of the file
+			do {
+				line = reader.readLine();
 				
+				if(line == null)
+					throw new IOException("Data section not found in " + fileName);
 			}
-					
-			bufferInstance = ((BufferedReader) fileReader).readLine();
+			while(line.startsWith(commentedValue) || line.equalsIgnoreCase(""));
 			
-			while(bufferInstance.startsWith(commentedValue) || bufferInstance.equalsIgnoreCase("")){
-				bufferInstance = ((BufferedReader) fileReader).readLine();
-			}
+			int index = line.indexOf('[');
+			if(index != -1)
+			line = line.substring(0,index) + " [" + line.substring(index+1);
 			
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (Exception e){
-			e.printStackTrace();
-		}
-	}
-	
-	
-	/**
-	 * Store the next instance in bufferInstance
-	 */
-	private void prepareNextInstance()
-	{		
-		try
-		{
-			//Get the next instance
-			String lineInstance = ((BufferedReader) fileReader).readLine();
-			while(lineInstance.startsWith(commentedValue) || lineInstance.equalsIgnoreCase("")){
-				lineInstance = ((BufferedReader) fileReader).readLine();
-			}	
-
-			bufferInstance = lineInstance;
-		
-		}catch(Exception e){
-				bufferInstance = null;
+			index = line.indexOf('{');
+			if(index != -1)
+			line = line.substring(0,index) + " {" + line.substring(index+1);
+			
+			elementLine = new StringTokenizer(line);
+			element = elementLine.nextToken();
 		}
 	}
 	
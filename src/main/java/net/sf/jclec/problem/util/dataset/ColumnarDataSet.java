@@ -0,0 +1,429 @@
+package net.sf.jclec.problem.util.dataset;
+
+import java.util.ArrayList;
+
+import net.sf.jclec.problem.util.dataset.instance.ColumnarInstance;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+import net.sf.jclec.util.random.IRandGen;
+
+/**
+ * Dataset implementation that stores the instances by columns.
+ *
+ * Each attribute is kept in a contiguous primitive array (columns[attribute][instance])
+ * and the class of every instance is available as an int array, so the evaluators can
+ * scan one attribute over the whole dataset without boxing or touching instance objects.
+ * The instances of each class are also available as an InstanceBitSet.
+ * The IInstance view of the dataset is offered through ColumnarInstance objects that read
+ * their values from the columns.
+ *
+ * The file is read with KeelDataSet or ArffDataSet (depending on the file extension),
+ * which parse the data section straight into the columns. A columnar copy of any other dataset
+ * can also be built with the ColumnarDataSet(IDataset) constructor.
+ *
+ */
+
+public class ColumnarDataSet extends FileDataset
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = -2917523094451822790L;
+
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Properties
+	/////////////////////////////////////////////////////////////////
+
+	/** Attribute values, indexed as columns[attribute][instance] */
+
+	protected double[][] columns;
+
+	/** Number of instances */
+
+	protected int numberOfInstances;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------- Internal variables
+	/////////////////////////////////////////////////////////////////
+
+	/** Class labels of the instances */
+
+	private transient int[] classLabels;
+
+	/** Instances of each class label */
+
+	private transient InstanceBitSet[] classBitSets;
+
+	/** Non empty words of the instances of each class label */
+
+	private transient int[][] classWordIndexes;
+
+	/** Class index used to build the class labels */
+
+	private transient int classLabelsIndex = -1;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Empty constructor
+	 */
+
+	public ColumnarDataSet()
+	{
+		super();
+	}
+
+	/**
+	 * Constructor that builds a columnar copy of a dataset.
+	 * The metadata object is shared with the source dataset.
+	 *
+	 * @param dataset the source dataset
+	 */
+
+	public ColumnarDataSet(IDataset dataset)
+	{
+		super();
+
+		setName(dataset.getName());
+		setMetadata(dataset.getMetadata());
+
+		if(dataset instanceof FileDataset)
+			setFileName(((FileDataset) dataset).getFileName());
+
+		setInstances(dataset.getInstances());
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Load instances from the data set file
+	 *
+	 * The file is read by the dataset class that handles its format,
+	 * which parses the values straight into the columns
+	 */
+
+	public void loadInstances()
+	{
+		try {
+			double[][] columns;
+
+			if(fileName.toLowerCase().endsWith(".arff"))
+			{
+				ArffDataSet source = new ArffDataSet();
+				source.setFileName(fileName);
+				columns = source.loadColumns();
+				setName(source.getName());
+				setMetadata(source.getMetadata());
+			}
+			else
+			{
+				KeelDataSet source = new KeelDataSet();
+				source.setFileName(fileName);
+				columns = source.loadColumns();
+				setName(source.getName());
+				setMetadata(source.getMetadata());
+			}
+
+			setColumns(columns, columns.length == 0 ? 0 : columns[0].length);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Set the dataset instances, copying their values into the columns
+	 *
+	 * @param instances the instances
+	 */
+
+	public void setInstances(ArrayList<IInstance> instances)
+	{
+		int numberOfAttributes = metadata.numberOfAttributes();
+
+		double[][] columns = new double[numberOfAttributes][instances.size()];
+
+		for(int i=0; i<instances.size(); i++)
+		{
+			IInstance instance = instances.get(i);
+
+			for(int j=0; j<numberOfAttributes; j++)
+				columns[j][i] = instance.getValue(j);
+		}
+
+		setColumns(columns, instances.size());
+	}
+
+	/**
+	 * Get the dataset instances as views over the columns
+	 *
+	 * @return instances
+	 */
+
+	public ArrayList<IInstance> getInstances()
+	{
+		return instances;
+	}
+
+	/**
+	 * Add the new instances to the dataset
+	 *
+	 * @param newinstances instances to add
+	 */
+
+	public void addInstances(ArrayList<IInstance> newinstances)
+	{
+		int numberOfAttributes = metadata.numberOfAttributes();
+		int size = numberOfInstances + newinstances.size();
+
+		double[][] columns = new double[numberOfAttributes][size];
+
+		for(int j=0; j<numberOfAttributes; j++)
+			System.arraycopy(this.columns[j], 0, columns[j], 0, numberOfInstances);
+
+		for(int i=0; i<newinstances.size(); i++)
+		{
+			IInstance instance = newinstances.get(i);
+
+			for(int j=0; j<numberOfAttributes; j++)
+				columns[j][numberOfInstances + i] = instance.getValue(j);
+		}
+
+		setColumns(columns, size);
+	}
+
+	/**
+	 * Get the number of instances
+	 *
+	 * @return the number of instances
+	 */
+
+	public int numberOfInstances()
+	{
+		return numberOfInstances;
+	}
+
+	/**
+	 * Access to the attribute columns
+	 *
+	 * @return the columns, indexed as columns[attribute][instance]
+	 */
+
+	public double[][] getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * Access to the values of an attribute
+	 *
+	 * @param attributeIndex attribute index
+	 *
+	 * @return the values of the attribute for all the instances
+	 */
+
+	public double[] getColumn(int attributeIndex)
+	{
+		return columns[attributeIndex];
+	}
+
+	/**
+	 * Access to the class labels of the instances
+	 *
+	 * The labels are taken from the column of the current class index of the metadata
+	 *
+	 * @return the class label of each instance
+	 */
+
+	public synchronized int[] getClassLabels()
+	{
+		int classIndex = metadata.getClassIndex();
+
+		if(classLabels == null || classLabelsIndex != classIndex)
+		{
+			int[] labels = new int[numberOfInstances];
+			double[] column = columns[classIndex];
+
+			for(int i=0; i<numberOfInstances; i++)
+				labels[i] = (int) column[i];
+
+			int numberOfLabels = 0;
+
+			for(int i=0; i<numberOfInstances; i++)
+				if(labels[i] >= numberOfLabels)
+					numberOfLabels = labels[i] + 1;
+
+			InstanceBitSet[] bitSets = new InstanceBitSet[numberOfLabels];
+
+			for(int j=0; j<numberOfLabels; j++)
+				bitSets[j] = new InstanceBitSet(numberOfInstances);
+
+			for(int i=0; i<numberOfInstances; i++)
+				if(labels[i] >= 0)
+					bitSets[labels[i]].set(i);
+
+			int[][] wordIndexes = new int[numberOfLabels][];
+
+			for(int j=0; j<numberOfLabels; j++)
+				wordIndexes[j] = bitSets[j].wordIndex();
+
+			classLabels = labels;
+			classBitSets = bitSets;
+			classWordIndexes = wordIndexes;
+			classLabelsIndex = classIndex;
+		}
+
+		return classLabels;
+	}
+
+	/**
+	 * Access to the instances that belong to a class
+	 *
+	 * @param label the class label
+	 *
+	 * @return the set of instances of the class
+	 */
+
+	public synchronized InstanceBitSet getClassBitSet(int label)
+	{
+		getClassLabels();
+
+		if(label < 0 || label >= classBitSets.length)
+			return new InstanceBitSet(numberOfInstances);
+
+		return classBitSets[label];
+	}
+
+	/**
+	 * Access to the index of the words of the instances that belong to a class,
+	 * used to intersect other sets with the class visiting only its words
+	 *
+	 * @param label the class label
+	 *
+	 * @return the non empty words of the set of instances of the class
+	 */
+
+	public synchronized int[] getClassWordIndex(int label)
+	{
+		getClassLabels();
+
+		if(label < 0 || label >= classWordIndexes.length)
+			return new int[0];
+
+		return classWordIndexes[label];
+	}
+
+	/**
+	 * Draws a stratified sample of the instances without replacement
+	 *
+	 * Every class of the metadata contributes a number of instances proportional to
+	 * its frequency in the dataset, and at least one instance if it has any
+	 *
+	 * @param size number of instances of the sample
+	 * @param randgen random generator used to choose the instances
+	 *
+	 * @return the indexes of the sampled instances in increasing order,
+	 * or null if the sample would contain the whole dataset
+	 */
+
+	public int[] stratifiedSample(int size, IRandGen randgen)
+	{
+		if(size >= numberOfInstances)
+			return null;
+
+		int numberOfClasses = metadata.numberOfClasses();
+
+		InstanceBitSet sample = new InstanceBitSet(numberOfInstances);
+		int[] candidates = new int[numberOfInstances];
+
+		for(int label=0; label<numberOfClasses; label++)
+		{
+			InstanceBitSet instances = getClassBitSet(label);
+
+			int numberOfCandidates = 0;
+
+			for(int i = instances.nextSetBit(0); i >= 0; i = instances.nextSetBit(i+1))
+				candidates[numberOfCandidates++] = i;
+
+			if(numberOfCandidates == 0)
+				continue;
+
+			int quota = (int) Math.round((double) size * numberOfCandidates / numberOfInstances);
+			quota = Math.min(numberOfCandidates, Math.max(1, quota));
+
+			// Partial shuffle of the instances of the class
+			for(int k=0; k<quota; k++)
+			{
+				int j = randgen.choose(k, numberOfCandidates);
+
+				int candidate = candidates[j];
+				candidates[j] = candidates[k];
+				candidates[k] = candidate;
+
+				sample.set(candidate);
+			}
+		}
+
+		int[] indexes = new int[sample.cardinality()];
+
+		for(int i = sample.nextSetBit(0), k = 0; i >= 0; i = sample.nextSetBit(i+1))
+			indexes[k++] = i;
+
+		return indexes;
+	}
+
+	/**
+	 * Copy method
+	 *
+	 * @return A copy of this dataset
+	 */
+
+	public IDataset copy()
+	{
+		ColumnarDataSet dataset = new ColumnarDataSet();
+
+		dataset.setName(name);
+		dataset.setFileName(fileName);
+		dataset.setMetadata(metadata.copy());
+
+		double[][] columns = new double[this.columns.length][];
+
+		for(int j=0; j<columns.length; j++)
+			columns[j] = this.columns[j].clone();
+
+		dataset.setColumns(columns, numberOfInstances);
+
+		return dataset;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Set the attribute columns and rebuild the instance views
+	 *
+	 * @param columns the columns, indexed as columns[attribute][instance]
+	 * @param numberOfInstances number of instances
+	 */
+
+	protected synchronized void setColumns(double[][] columns, int numberOfInstances)
+	{
+		this.columns = columns;
+		this.numberOfInstances = numberOfInstances;
+		this.classLabels = null;
+		this.classBitSets = null;
+		this.classWordIndexes = null;
+
+		instances = new ArrayList<IInstance>(numberOfInstances);
+
+		for(int i=0; i<numberOfInstances; i++)
+			instances.add(new ColumnarInstance(columns, i));
+	}
+}
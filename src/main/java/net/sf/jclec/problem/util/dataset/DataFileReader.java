@@ -0,0 +1,442 @@
+package net.sf.jclec.problem.util.dataset;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.jclec.problem.util.dataset.attribute.AttributeType;
+import net.sf.jclec.problem.util.dataset.attribute.CategoricalAttribute;
+import net.sf.jclec.problem.util.dataset.attribute.IAttribute;
+import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
+
+/**
+ * Single pass reader for the KEEL and ARFF dataset files.<p/>
+ *
+ * The file is memory-mapped and scanned once. The header lines are returned as strings
+ * by readLine(), so the datasets build their metadata as before, and the data section is
+ * parsed by readColumns() straight into primitive columns (columns[attribute][instance])
+ * without creating strings, boxed values or intermediate instances.
+ *
+ * Numbers are parsed by hand when the result is exact (up to 15 significant digits and
+ * a power of ten up to 22, where a single multiplication or division is correctly rounded)
+ * and with Double.parseDouble() otherwise, so the values are the same that the attribute
+ * parse() methods obtain. Categories are matched against the bytes of the category names
+ * of the attribute; an unknown category is stored as -1, as CategoricalAttribute does.
+ *
+ */
+
+final class DataFileReader
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Constants
+	/////////////////////////////////////////////////////////////////
+
+	/** Charset of the dataset files */
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/** Largest mantissa whose value is an exact double */
+
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/** Powers of ten that are exact doubles */
+
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	/** Initial number of instances of the columns */
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------- Internal variables
+	/////////////////////////////////////////////////////////////////
+
+	/** File contents */
+
+	private final ByteBuffer buffer;
+
+	/** Size of the file */
+
+	private final int limit;
+
+	/** Current position in the file */
+
+	private int position;
+
+	/** Current line number, for error messages */
+
+	private int lineNumber;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Constructor that maps the file
+	 *
+	 * @param fileName name of the dataset file
+	 * @throws IOException if the file cannot be read
+	 */
+
+	DataFileReader(String fileName) throws IOException
+	{
+		super();
+
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+
+		try {
+			FileChannel channel = file.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			limit = buffer.limit();
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Package methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Reads the next line of the file
+	 *
+	 * @return the line without the line terminator, null at the end of the file
+	 */
+
+	String readLine()
+	{
+		if(position >= limit)
+			return null;
+
+		int start = position;
+
+		while(position < limit && !isLineEnd(buffer.get(position)))
+			position++;
+
+		int end = position;
+
+		skipLineEnd();
+
+		return string(start, end);
+	}
+
+	/**
+	 * Reads the rest of the file as data lines. Lines that start with the comment symbol and
+	 * lines without values are skipped.
+	 *
+	 * @param metadata metadata of the dataset
+	 * @param separator separator of the values
+	 * @param comment first character of the comment lines
+	 * @return the values, indexed as columns[attribute][instance]
+	 * @throws IOException if a line does not have a value for every attribute or a value is not valid
+	 */
+
+	double[][] readColumns(IMetadata metadata, char separator, char comment) throws IOException
+	{
+		int numberOfAttributes = metadata.numberOfAttributes();
+
+		// Attributes parsed as numbers
+		boolean[] numerical = new boolean[numberOfAttributes];
+
+		// Category names and values of the categorical attributes
+		byte[][][] categoryNames = new byte[numberOfAttributes][][];
+		double[][] categoryValues = new double[numberOfAttributes][];
+
+		for(int j=0; j<numberOfAttributes; j++)
+		{
+			IAttribute attribute = metadata.getAttribute(j);
+
+			numerical[j] = attribute.getType() == AttributeType.Numerical || attribute.getType() == AttributeType.Integer;
+
+			if(attribute.getType() == AttributeType.Categorical)
+			{
+				List<String> categories = ((CategoricalAttribute) attribute).getCategories();
+
+				categoryNames[j] = new byte[categories.size()][];
+				categoryValues[j] = new double[categories.size()];
+
+				for(int k=0; k<categories.size(); k++)
+				{
+					categoryNames[j][k] = categories.get(k).getBytes(CHARSET);
+					categoryValues[j][k] = attribute.parse(categories.get(k));
+				}
+			}
+		}
+
+		int capacity = INITIAL_CAPACITY;
+		double[][] columns = new double[numberOfAttributes][capacity];
+		int numberOfInstances = 0;
+
+		while(position < limit)
+		{
+			lineNumber++;
+
+			if(buffer.get(position) == comment)
+			{
+				while(position < limit && !isLineEnd(buffer.get(position)))
+					position++;
+				skipLineEnd();
+				continue;
+			}
+
+			if(numberOfInstances == capacity)
+			{
+				capacity *= 2;
+				for(int j=0; j<numberOfAttributes; j++)
+					columns[j] = Arrays.copyOf(columns[j], capacity);
+			}
+
+			int attribute = 0;
+
+			while(position < limit && !isLineEnd(buffer.get(position)))
+			{
+				// Token bounds, without blanks
+				while(position < limit && isBlank(buffer.get(position)))
+					position++;
+
+				int start = position;
+
+				while(position < limit && !isLineEnd(buffer.get(position)) && buffer.get(position) != separator)
+					position++;
+
+				int end = position;
+
+				while(end > start && isBlank(buffer.get(end-1)))
+					end--;
+
+				if(position < limit && buffer.get(position) == separator)
+					position++;
+
+				if(end == start)
+					continue;
+
+				if(attribute == numberOfAttributes)
+					throw new IOException("Line " + lineNumber + " of the data section has more than " + numberOfAttributes + " values");
+
+				if(categoryNames[attribute] != null)
+					columns[attribute][numberOfInstances] = parseCategory(start, end, categoryNames[attribute], categoryValues[attribute]);
+				else if(numerical[attribute])
+					columns[attribute][numberOfInstances] = parseNumber(start, end);
+				else
+					columns[attribute][numberOfInstances] = metadata.getAttribute(attribute).parse(string(start, end));
+
+				attribute++;
+			}
+
+			skipLineEnd();
+
+			// Lines without values are skipped
+			if(attribute == 0)
+				continue;
+
+			if(attribute < numberOfAttributes)
+				throw new IOException("Line " + lineNumber + " of the data section has " + attribute + " values instead of " + numberOfAttributes);
+
+			numberOfInstances++;
+		}
+
+		for(int j=0; j<numberOfAttributes; j++)
+			columns[j] = Arrays.copyOf(columns[j], numberOfInstances);
+
+		return columns;
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Parses a number
+	 *
+	 * @param start first byte of the number
+	 * @param end byte after the number
+	 * @return the value of the number
+	 * @throws IOException if the token is not a number
+	 */
+
+	private double parseNumber(int start, int end) throws IOException
+	{
+		int p = start;
+		boolean negative = false;
+
+		byte c = buffer.get(p);
+
+		if(c == '-' || c == '+')
+		{
+			negative = (c == '-');
+			p++;
+		}
+
+		long mantissa = 0;
+		int significantDigits = 0, digits = 0, exponent = 0;
+
+		// Integer part
+		while(p < end && (c = buffer.get(p)) >= '0' && c <= '9')
+		{
+			if(mantissa != 0 || c != '0')
+				significantDigits++;
+			mantissa = mantissa * 10 + (c - '0');
+			digits++;
+			p++;
+
+			if(significantDigits > 15)
+				return parseDouble(start, end);
+		}
+
+		// Fraction part
+		if(p < end && buffer.get(p) == '.')
+		{
+			p++;
+
+			while(p < end && (c = buffer.get(p)) >= '0' && c <= '9')
+			{
+				if(mantissa != 0 || c != '0')
+					significantDigits++;
+				mantissa = mantissa * 10 + (c - '0');
+				exponent--;
+				digits++;
+				p++;
+
+				if(significantDigits > 15)
+					return parseDouble(start, end);
+			}
+		}
+
+		if(digits == 0)
+			return parseDouble(start, end);
+
+		// Exponent part
+		if(p < end && ((c = buffer.get(p)) == 'e' || c == 'E'))
+		{
+			p++;
+
+			boolean negativeExponent = false;
+
+			if(p < end && ((c = buffer.get(p)) == '-' || c == '+'))
+			{
+				negativeExponent = (c == '-');
+				p++;
+			}
+
+			int value = 0, exponentDigits = 0;
+
+			while(p < end && (c = buffer.get(p)) >= '0' && c <= '9' && exponentDigits < 4)
+			{
+				value = value * 10 + (c - '0');
+				exponentDigits++;
+				p++;
+			}
+
+			if(exponentDigits == 0)
+				return parseDouble(start, end);
+
+			exponent += negativeExponent ? -value : value;
+		}
+
+		if(p != end || mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22)
+			return parseDouble(start, end);
+
+		double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a number with Double.parseDouble()
+	 *
+	 * @param start first byte of the number
+	 * @param end byte after the number
+	 * @return the value of the number
+	 * @throws IOException if the token is not a number
+	 */
+
+	private double parseDouble(int start, int end) throws IOException
+	{
+		String token = string(start, end);
+
+		try {
+			return Double.parseDouble(token);
+		}
+		catch(NumberFormatException e) {
+			throw new IOException("Line " + lineNumber + " of the data section has an invalid number: " + token);
+		}
+	}
+
+	/**
+	 * Parses a category
+	 *
+	 * @param start first byte of the category
+	 * @param end byte after the category
+	 * @param names names of the categories
+	 * @param values values of the categories
+	 * @return the value of the category, -1 if it is unknown
+	 */
+
+	private double parseCategory(int start, int end, byte[][] names, double[] values)
+	{
+		int length = end - start;
+
+		for(int k=0; k<names.length; k++)
+		{
+			byte[] name = names[k];
+
+			if(name.length != length)
+				continue;
+
+			int i = 0;
+			while(i < length && name[i] == buffer.get(start + i))
+				i++;
+
+			if(i == length)
+				return values[k];
+		}
+
+		return -1.0d;
+	}
+
+	/**
+	 * Decodes a token
+	 *
+	 * @param start first byte of the token
+	 * @param end byte after the token
+	 * @return the token
+	 */
+
+	private String string(int start, int end)
+	{
+		byte[] bytes = new byte[end - start];
+		for(int i=0; i<bytes.length; i++)
+			bytes[i] = buffer.get(start + i);
+
+		return new String(bytes, CHARSET);
+	}
+
+	/**
+	 * Moves the position after the line terminator (\n, \r or \r\n)
+	 */
+
+	private void skipLineEnd()
+	{
+		if(position < limit && buffer.get(position) == '\r')
+			position++;
+		if(position < limit && buffer.get(position) == '\n')
+			position++;
+	}
+
+	private static boolean isLineEnd(byte c)
+	{
+		return c == '\n' || c == '\r';
+	}
+
+	private static boolean isBlank(byte c)
+	{
+		return c == ' ' || c == '\t';
+	}
+}
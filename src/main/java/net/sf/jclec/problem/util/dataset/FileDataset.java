@@ -1,6 +1,10 @@
 package net.sf.jclec.problem.util.dataset;
 
 import java.io.Reader;
+import java.util.ArrayList;
+
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+import net.sf.jclec.problem.util.dataset.instance.Instance;
 
 import org.apache.commons.configuration.Configuration;
 
@@ -94,4 +98,35 @@ public abstract class FileDataset extends AbstractDataset
 		// Set file name
 		setFileName(settings.getString(""));
 	}
-}
\ No newline at end of file
+	
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Creates the instances of a dataset read by columns
+	 * 
+	 * @param columns the values, indexed as columns[attribute][instance]
+	 * 
+	 * @return the instances
+	 */
+	
+	protected ArrayList<IInstance> createInstances(double[][] columns)
+	{
+		int numberOfInstances = columns.length == 0 ? 0 : columns[0].length;
+		
+		ArrayList<IInstance> instances = new ArrayList<IInstance>(numberOfInstances);
+		
+		for(int i=0; i<numberOfInstances; i++)
+		{
+			Instance instance = new Instance(columns.length);
+			
+			for(int j=0; j<columns.length; j++)
+				instance.setValue(j, columns[j][i]);
+			
+			instances.add(instance);
+		}
+		
+		return instances;
+	}
+}
@@ -0,0 +1,315 @@
+package net.sf.jclec.problem.util.dataset;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Fixed size set of instance indexes of a dataset stored as a bitset.
+ *
+ * It is used to represent the instances covered by a rule and the instances of
+ * each class, so the confusion matrix of a rule is obtained with popcounts of
+ * ANDed words instead of evaluating the rule over the dataset again.
+ *
+ * Two sets are equal if they have the same size and instances, so the coverage of a
+ * rule can be used as a fingerprint of its semantics on the dataset.
+ *
+ */
+
+public final class InstanceBitSet implements Serializable
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = -6108531419528713624L;
+
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Properties
+	/////////////////////////////////////////////////////////////////
+
+	/** Bits of the set, instance i is stored in bit i%64 of word i/64 */
+
+	private final long[] words;
+
+	/** Number of instances of the dataset */
+
+	private final int size;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Constructor that creates an empty set
+	 *
+	 * @param size number of instances of the dataset
+	 */
+
+	public InstanceBitSet(int size)
+	{
+		super();
+
+		this.size = size;
+		this.words = new long[(size + 63) >>> 6];
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Get the number of instances of the dataset
+	 *
+	 * @return the number of instances
+	 */
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Adds an instance to the set
+	 *
+	 * @param index instance index
+	 */
+
+	public void set(int index)
+	{
+		words[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * Removes an instance from the set
+	 *
+	 * @param index instance index
+	 */
+
+	public void clear(int index)
+	{
+		words[index >>> 6] &= ~(1L << index);
+	}
+
+	/**
+	 * Adds all the instances of the dataset to the set
+	 */
+
+	public void setAll()
+	{
+		for(int i=0; i<words.length; i++)
+			words[i] = -1L;
+
+		// Bits beyond the last instance are kept clear
+		if((size & 63) != 0)
+			words[words.length - 1] = (1L << size) - 1;
+	}
+
+	/**
+	 * Checks if an instance belongs to the set
+	 *
+	 * @param index instance index
+	 * @return true if the instance belongs to the set
+	 */
+
+	public boolean get(int index)
+	{
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Removes all the instances from the set
+	 */
+
+	public void clear()
+	{
+		for(int i=0; i<words.length; i++)
+			words[i] = 0;
+	}
+
+	/**
+	 * Index of the first instance of the set from a given index
+	 *
+	 * @param fromIndex first index to check
+	 * @return the index of the next instance in the set, -1 if there is none
+	 */
+
+	public int nextSetBit(int fromIndex)
+	{
+		int wordIndex = fromIndex >>> 6;
+
+		if(wordIndex >= words.length)
+			return -1;
+
+		long word = words[wordIndex] & (-1L << fromIndex);
+
+		while(word == 0)
+		{
+			if(++wordIndex == words.length)
+				return -1;
+
+			word = words[wordIndex];
+		}
+
+		return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Number of instances in the set
+	 *
+	 * @return the number of instances in the set
+	 */
+
+	public int cardinality()
+	{
+		int count = 0;
+
+		for(int i=0; i<words.length; i++)
+			count += Long.bitCount(words[i]);
+
+		return count;
+	}
+
+	/**
+	 * Number of instances that belong to this set and to other one
+	 *
+	 * @param other the other set
+	 * @return the cardinality of the intersection
+	 */
+
+	public int andCardinality(InstanceBitSet other)
+	{
+		long[] otherWords = other.words;
+		int count = 0;
+
+		for(int i=0; i<words.length; i++)
+			count += Long.bitCount(words[i] & otherWords[i]);
+
+		return count;
+	}
+
+	/**
+	 * Number of instances that belong to this set and to other one, visiting only
+	 * the words of the other set that have some instance
+	 *
+	 * @param other the other set
+	 * @param wordIndex the index of the words of the other set, as returned by wordIndex()
+	 * @return the cardinality of the intersection
+	 */
+
+	public int andCardinality(InstanceBitSet other, int[] wordIndex)
+	{
+		long[] otherWords = other.words;
+		int count = 0;
+
+		for(int k=0; k<wordIndex.length; k++)
+		{
+			int i = wordIndex[k];
+			count += Long.bitCount(words[i] & otherWords[i]);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Indexes of the words that have some instance, so the operations with
+	 * a sparse set only visit the words where the set has instances
+	 *
+	 * @return the indexes of the non empty words in increasing order
+	 */
+
+	public int[] wordIndex()
+	{
+		int numberOfWords = 0;
+
+		for(int i=0; i<words.length; i++)
+			if(words[i] != 0)
+				numberOfWords++;
+
+		int[] wordIndex = new int[numberOfWords];
+
+		for(int i=0, k=0; i<words.length; i++)
+			if(words[i] != 0)
+				wordIndex[k++] = i;
+
+		return wordIndex;
+	}
+
+	/**
+	 * Adds to this set the intersection of two sets
+	 *
+	 * @param set1 first set
+	 * @param set2 second set
+	 * @return number of instances that were not already in this set
+	 */
+
+	public int addAnd(InstanceBitSet set1, InstanceBitSet set2)
+	{
+		long[] words1 = set1.words, words2 = set2.words;
+		int count = 0;
+
+		for(int i=0; i<words.length; i++)
+		{
+			long added = words1[i] & words2[i] & ~words[i];
+			count += Long.bitCount(added);
+			words[i] |= added;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Adds to this set the intersection of two sets, visiting only the
+	 * words of the second set that have some instance
+	 *
+	 * @param set1 first set
+	 * @param set2 second set
+	 * @param wordIndex the index of the words of the second set, as returned by wordIndex()
+	 * @return number of instances that were not already in this set
+	 */
+
+	public int addAnd(InstanceBitSet set1, InstanceBitSet set2, int[] wordIndex)
+	{
+		long[] words1 = set1.words, words2 = set2.words;
+		int count = 0;
+
+		for(int k=0; k<wordIndex.length; k++)
+		{
+			int i = wordIndex[k];
+			long added = words1[i] & words2[i] & ~words[i];
+			count += Long.bitCount(added);
+			words[i] |= added;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Hash code of the instances of the set
+	 *
+	 * @return hash code
+	 */
+
+	public int hashCode()
+	{
+		return 31 * size + Arrays.hashCode(words);
+	}
+
+	/**
+	 * Checks if another set has the same size and instances
+	 *
+	 * @param other the object to compare
+	 * @return true if the sets are equal
+	 */
+
+	public boolean equals(Object other)
+	{
+		if(!(other instanceof InstanceBitSet))
+			return false;
+
+		InstanceBitSet set = (InstanceBitSet) other;
+
+		return set.size == size && Arrays.equals(set.words, words);
+	}
+}
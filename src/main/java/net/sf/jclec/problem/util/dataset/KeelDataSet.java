@@ -1,20 +1,14 @@
 package net.sf.jclec.problem.util.dataset;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
 
 import net.sf.jclec.problem.util.dataset.attribute.CategoricalAttribute;
-import net.sf.jclec.problem.util.dataset.attribute.IAttribute;
 import net.sf.jclec.problem.util.dataset.attribute.IntegerAttribute;
 import net.sf.jclec.problem.util.dataset.attribute.NumericalAttribute;
 import net.sf.jclec.problem.util.dataset.instance.IInstance;
-import net.sf.jclec.problem.util.dataset.instance.Instance;
 import net.sf.jclec.problem.util.dataset.metadata.ClassificationMetadata;
 import net.sf.jclec.util.range.Closure;
 import net.sf.jclec.util.range.Interval;
@@ -72,13 +66,6 @@ public class KeelDataSet extends FileDataset {
 	/** Symbol which represents the separation between values */
 	
 	protected String separationValue;
-
-	/** Buffer Instance */
-	
-	protected String bufferInstance = new String();
-	
-	/** Private cursor */
-	private Instance cursorInstance;
 	
 	/////////////////////////////////////////////////////////////////
 	// -------------------------------------------------- Constructor
@@ -100,27 +87,14 @@ public class KeelDataSet extends FileDataset {
 	/**
 	 * Load instances from the data set
 	 * 
-	 * Open dataset, obtain metadata, read instances, close dataset
+	 * The file is read in a single pass, see loadColumns()
 	 */
 	
 	public void loadInstances()
 	{		
 		try {
 			
-			open();
-			
-            instances = new ArrayList<IInstance>();
-            
-            reset();
-            
-            while(next())
-            {
-            	instances.add(cursorInstance.copy());
-            }
-            
-            setInstances(instances);
-            
-            close();
+            setInstances(createInstances(loadColumns()));
         }
 		catch (Exception e) 
         {
@@ -162,187 +136,84 @@ public class KeelDataSet extends FileDataset {
 	}
 	
 	/////////////////////////////////////////////////////////////////
-	// ---------------------------------------------- Private Methods
+	// ---------------------------------------------- Package Methods
 	/////////////////////////////////////////////////////////////////
-
-	/**
-	 * Opens the dataset and obtains the metadata
-	 */
-	
-	private void open()
-	{
-		// Generate the specification from header of data source file
-		obtainMetadata(fileName);
-	}
 	
 	/**
-	 * Resets the dataset cursor to the beginning
-	 */
-	
-	private void reset(){
-				
-		try {
-			fileReader.close();
-			fileReader = new BufferedReader(new FileReader(new File(fileName)));
-
-			//Read until finding the sentence @DATA
-			String line = ((BufferedReader) fileReader).readLine();
-			while (!line.equalsIgnoreCase(KEEL_DATA)){
-				line = ((BufferedReader) fileReader).readLine();
-			}
-			bufferInstance = ((BufferedReader) fileReader).readLine();
-		
-			while(bufferInstance.startsWith(commentedValue) || bufferInstance.equalsIgnoreCase("")){
-				bufferInstance = ((BufferedReader) fileReader).readLine();
-			}
-			
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (Exception e){
-			e.printStackTrace();
-		}
-	
-	}
-	
-	/**
-	 * Reads the next instance
+	 * Reads the dataset file in a single pass: the header into the metadata
+	 * and the data section into columns
+	 * 
+	 * @return the values, indexed as columns[attribute][instance]
+	 * @throws IOException if the file cannot be read
 	 */
 	
-	private boolean next() throws Exception
+	double[][] loadColumns() throws IOException
 	{
-		if(bufferInstance != null)
-		{
-			try{
-				//Get the attributes of this instance
-				StringTokenizer token = new StringTokenizer(bufferInstance, separationValue);
-				int numAttributes = 0;
-				ArrayList<Double> values = new ArrayList<Double>();
-			
-				while(token.hasMoreTokens()){
-					IAttribute attribute = metadata.getAttribute(numAttributes);
-					double value = attribute.parse(token.nextToken().trim());
-					values.add(value);
-								
-					numAttributes++;
-				}
-				
-				cursorInstance = new Instance(numAttributes);
-				
-				for(int i = 0; i < numAttributes; i++)
-					cursorInstance.setValue(i,values.get(i));
-				
-				prepareNextInstance();
-			
-			}catch(Exception e)
-			{
-				e.printStackTrace();
-			}
-			
-			return true;
-		}
-		else
-			return false;
+		DataFileReader reader = new DataFileReader(fileName);
+		
+		obtainMetadata(reader);
+		
+		return reader.readColumns(metadata, separationValue.charAt(0), commentedValue.charAt(0));
 	}
 	
-	/**
-	 * Closes the dataset file
-	 */
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private Methods
+	/////////////////////////////////////////////////////////////////
 
-	private void close() throws Exception {
-		try {
-			fileReader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
-	
 	/**
 	 * Generate the dataset specification
 	 *  
-	 * @param fileName Name of data source file
+	 * @param reader Reader of the data source file, positioned at the beginning
+	 * @throws IOException if the file does not have a data section
 	 */
 	
-	private void obtainMetadata(String fileName)
+	private void obtainMetadata(DataFileReader reader) throws IOException
 	{
-		File file = new File(fileName);
 		metadata = new ClassificationMetadata();
 		
-		try {
-			
-			fileReader = new BufferedReader(new FileReader(file));
-			
-			//Read until finding the sentence @DATA
-			String line = ((BufferedReader) fileReader).readLine();
-			StringTokenizer elementLine = new StringTokenizer(line);
-			String element = elementLine.nextToken();
+		//Read until finding the sentence @DATA
+		String line = reader.readLine();
+		StringTokenizer elementLine = new StringTokenizer(line);
+		String element = elementLine.nextToken();
+		
+		while (!element.equalsIgnoreCase(KEEL_DATA)){
 			
-			while (!element.equalsIgnoreCase(KEEL_DATA)){
+			if(element.equalsIgnoreCase(KEEL_ATTRIBUTE)){
+				//The next attribute	
+				String name = elementLine.nextToken();
+				String type = elementLine.nextToken();
 				
-				if(element.equalsIgnoreCase(KEEL_ATTRIBUTE)){
-					//The next attribute	
-					String name = elementLine.nextToken();
-					String type = elementLine.nextToken();
-					
-					if(type.equalsIgnoreCase("REAL") || type.equalsIgnoreCase("INTEGER")){
-						addAttributeToSpecification(type, line, name);
-					}
-					else {
-						addAttributeToSpecification("STRING", line, name);
-					}
-					
+				if(type.equalsIgnoreCase("REAL") || type.equalsIgnoreCase("INTEGER")){
+					addAttributeToSpecification(type, line, name);
 				}
-				if(element.equalsIgnoreCase(KEEL_RELATION)){
-					setName(elementLine.nextToken());
+				else {
+					addAttributeToSpecification("STRING", line, name);
 				}
-		
-				//Next line of the file
-				line = ((BufferedReader) fileReader).readLine();
-				while(line.startsWith(commentedValue) || line.equalsIgnoreCase(""))
-					line = ((BufferedReader) fileReader).readLine();
-				
-				int index = line.indexOf('[');
-				if(index != -1)
-				line = line.substring(0,index) + " [" + line.substring(index+1);
 				
-				index = line.indexOf('{');
-				if(index != -1)
-				line = line.substring(0,index) + " {" + line.substring(index+1);
+			}
+			if(element.equalsIgnoreCase(KEEL_RELATION)){
+				setName(elementLine.nextToken());
+			}
+		
+			//Next line of the file
+			do {
+				line = reader.readLine();
 				
-				elementLine = new StringTokenizer(line);
-				element = elementLine.nextToken();
+				if(line == null)
+					throw new IOException("Data section not found in " + fileName);
 			}
-					
-			bufferInstance = ((BufferedReader) fileReader).readLine();
+			while(line.startsWith(commentedValue) || line.equalsIgnoreCase(""));
 			
-			while(bufferInstance.startsWith(commentedValue) || bufferInstance.equalsIgnoreCase("")){
-				bufferInstance = ((BufferedReader) fileReader).readLine();
-			}
+			int index = line.indexOf('[');
+			if(index != -1)
+			line = line.substring(0,index) + " [" + line.substring(index+1);
 			
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (Exception e){
-			e.printStackTrace();
-		}
-	}
-	
-	
-	/**
-	 * Store the next instance in bufferInstance
-	 */
-	private void prepareNextInstance()
-	{		
-		try
-		{
-			//Get the next instance
-			String lineInstance = ((BufferedReader) fileReader).readLine();
-			while(lineInstance.startsWith(commentedValue) || lineInstance.equalsIgnoreCase("")){
-				lineInstance = ((BufferedReader) fileReader).readLine();
-			}	
-
-			bufferInstance = lineInstance;
-		
-		}catch(Exception e){
-				bufferInstance = null;
+			index = line.indexOf('{');
+			if(index != -1)
+			line = line.substring(0,index) + " {" + line.substring(index+1);
+			
+			elementLine = new StringTokenizer(line);
+			element = elementLine.nextToken();
 		}
 	}
 	
@@ -0,0 +1,516 @@
+package net.sf.jclec.problem.util.dataset;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import net.sf.jclec.problem.util.dataset.attribute.AttributeType;
+import net.sf.jclec.problem.util.dataset.attribute.CategoricalAttribute;
+import net.sf.jclec.problem.util.dataset.attribute.IAttribute;
+import net.sf.jclec.problem.util.dataset.attribute.IntegerAttribute;
+import net.sf.jclec.problem.util.dataset.attribute.NumericalAttribute;
+import net.sf.jclec.problem.util.dataset.metadata.ClassificationMetadata;
+import net.sf.jclec.util.range.Closure;
+import net.sf.jclec.util.range.Interval;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Columnar dataset that keeps a binary snapshot of its data file.<p/>
+ *
+ * The first time a KEEL or ARFF file is loaded, the metadata (attribute types, names,
+ * categories and intervals) and the columns are written to &lt;file name&gt;.snapshot,
+ * next to the data file or in the directory given by the snapshot-dir attribute of the
+ * data file element (e.g. &lt;train-data snapshot-dir="/tmp"&gt;).
+ * Later loads read the snapshot instead of parsing the file, as long as the length,
+ * modification time and CRC-32 of the source file are the ones stored in the snapshot.
+ * Otherwise the file is parsed again and the snapshot is rewritten.
+ *
+ * The snapshot starts with a header (magic number, version, header length, source file
+ * checksums and metadata) followed by one block of doubles per attribute, aligned to 8
+ * bytes, so the columns are read from the mapped file with bulk copies. The columns are
+ * written and mapped in chunks, so the size of the snapshot is not limited to 2 GB.
+ *
+ */
+
+public class SnapshotDataSet extends ColumnarDataSet
+{
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------- Serialization constant
+	/////////////////////////////////////////////////////////////////
+
+	/** Generated by Eclipse */
+
+	private static final long serialVersionUID = 3551866245287730194L;
+
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Constants
+	/////////////////////////////////////////////////////////////////
+
+	/** Extension of the snapshot files */
+
+	public static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+	/** Magic number of the snapshot files ("JCDS") */
+
+	private static final int MAGIC = 0x4A434453;
+
+	/** Version of the snapshot format */
+
+	private static final int VERSION = 1;
+
+	/** Bytes before the header: magic number, version and header length */
+
+	private static final int PREAMBLE_LENGTH = 12;
+
+	/** Bytes of the columns written at a time, multiple of 8 */
+
+	private static final int WRITE_CHUNK = 1 << 20;
+
+	/** Maximum bytes of the columns mapped at a time, multiple of 8 */
+
+	private static final int MAP_WINDOW = 1 << 30;
+
+	/////////////////////////////////////////////////////////////////
+	// --------------------------------------------------- Properties
+	/////////////////////////////////////////////////////////////////
+
+	/** Directory of the snapshot, null to write it next to the data file */
+
+	protected String snapshotDir;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Empty constructor
+	 */
+
+	public SnapshotDataSet()
+	{
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------- Getting and setting properties
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Get the directory of the snapshot
+	 *
+	 * @return the directory, null if the snapshot is next to the data file
+	 */
+
+	public String getSnapshotDir()
+	{
+		return snapshotDir;
+	}
+
+	/**
+	 * Set the directory of the snapshot
+	 *
+	 * @param snapshotDir the directory, null to write the snapshot next to the data file
+	 */
+
+	public void setSnapshotDir(String snapshotDir)
+	{
+		this.snapshotDir = snapshotDir;
+	}
+
+	/**
+	 * Get the snapshot file of the data set file
+	 *
+	 * @return the snapshot file
+	 */
+
+	public File getSnapshotFile()
+	{
+		if(snapshotDir == null)
+			return new File(fileName + SNAPSHOT_EXTENSION);
+
+		return new File(snapshotDir, new File(fileName).getName() + SNAPSHOT_EXTENSION);
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Configuration method
+	 *
+	 * @param settings the data file element, with an optional snapshot-dir attribute
+	 */
+
+	public void configure(Configuration settings)
+	{
+		super.configure(settings);
+
+		setSnapshotDir(settings.getString("[@snapshot-dir]", null));
+	}
+
+	/**
+	 * Load instances from the snapshot of the data set file if it is up to date,
+	 * otherwise from the data set file, writing its snapshot
+	 */
+
+	public void loadInstances()
+	{
+		File source = new File(fileName);
+		File snapshot = getSnapshotFile();
+
+		long checksum = 0;
+
+		try {
+			checksum = checksum(source);
+
+			if(snapshot.exists() && readSnapshot(snapshot, source, checksum))
+				return;
+		}
+		catch(IOException e) {
+			System.out.println("Snapshot " + snapshot + " not used: " + e.getMessage());
+		}
+
+		super.loadInstances();
+
+		if(columns != null)
+		{
+			try {
+				writeSnapshot(snapshot, source, checksum);
+			}
+			catch(IOException e) {
+				System.out.println("Snapshot " + snapshot + " could not be written: " + e.getMessage());
+			}
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Reads the snapshot of the data set file
+	 *
+	 * @param snapshot snapshot file
+	 * @param source data set file
+	 * @param checksum CRC-32 of the data set file
+	 * @return true if the snapshot is up to date and has been read
+	 * @throws IOException if the snapshot cannot be read
+	 */
+
+	private boolean readSnapshot(File snapshot, File source, long checksum) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(snapshot, "r");
+
+		try {
+			FileChannel channel = file.getChannel();
+
+			ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH);
+			read(channel, preamble);
+
+			if(preamble.getInt() != MAGIC || preamble.getInt() != VERSION)
+				return false;
+
+			int headerLength = preamble.getInt();
+
+			if(headerLength < 0 || headerLength > channel.size() - PREAMBLE_LENGTH)
+				return false;
+
+			ByteBuffer header = ByteBuffer.allocate(headerLength);
+			read(channel, header);
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+
+			if(in.readLong() != source.length() || in.readLong() != source.lastModified() || in.readLong() != checksum)
+				return false;
+
+			// Metadata
+			String name = in.readBoolean() ? in.readUTF() : null;
+			ClassificationMetadata metadata = new ClassificationMetadata();
+			metadata.setClassIndex(in.readInt());
+
+			int numberOfAttributes = in.readInt();
+
+			for(int j=0; j<numberOfAttributes; j++)
+				metadata.addAttribute(readAttribute(in));
+
+			int numberOfInstances = in.readInt();
+
+			// Columns
+			long position = align(PREAMBLE_LENGTH + headerLength);
+
+			if(channel.size() != position + 8L * numberOfAttributes * numberOfInstances)
+				return false;
+
+			double[][] columns = new double[numberOfAttributes][numberOfInstances];
+			DoubleBuffer window = null;
+
+			for(int j=0; j<numberOfAttributes; j++)
+			{
+				for(int i=0; i<numberOfInstances; )
+				{
+					if(window == null || !window.hasRemaining())
+					{
+						long length = Math.min(MAP_WINDOW, channel.size() - position);
+						window = channel.map(FileChannel.MapMode.READ_ONLY, position, length).asDoubleBuffer();
+						position += length;
+					}
+
+					int length = Math.min(window.remaining(), numberOfInstances - i);
+					window.get(columns[j], i, length);
+					i += length;
+				}
+			}
+
+			setName(name);
+			setMetadata(metadata);
+			setColumns(columns, numberOfInstances);
+
+			return true;
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes the snapshot of the data set file. The snapshot is written to a
+	 * temporary file that is renamed when it is complete.
+	 *
+	 * @param snapshot snapshot file
+	 * @param source data set file
+	 * @param checksum CRC-32 of the data set file
+	 * @throws IOException if the snapshot cannot be written
+	 */
+
+	private void writeSnapshot(File snapshot, File source, long checksum) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeLong(source.length());
+		out.writeLong(source.lastModified());
+		out.writeLong(checksum);
+
+		// Metadata
+		out.writeBoolean(name != null);
+		if(name != null)
+			out.writeUTF(name);
+		out.writeInt(metadata.getClassIndex());
+		out.writeInt(metadata.numberOfAttributes());
+
+		for(int j=0; j<metadata.numberOfAttributes(); j++)
+			writeAttribute(out, metadata.getAttribute(j));
+
+		out.writeInt(numberOfInstances);
+		out.close();
+
+		byte[] header = bytes.toByteArray();
+
+		ByteBuffer preamble = ByteBuffer.allocate(align(PREAMBLE_LENGTH + header.length));
+		preamble.putInt(MAGIC);
+		preamble.putInt(VERSION);
+		preamble.putInt(header.length);
+		preamble.put(header);
+		preamble.clear();
+
+		if(snapshotDir != null)
+			new File(snapshotDir).mkdirs();
+
+		File temporary = new File(snapshot.getPath() + "." + System.nanoTime() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(temporary, "rw");
+
+		try {
+			FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			write(channel, preamble);
+
+			// Columns
+			ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK);
+			DoubleBuffer doubles = chunk.asDoubleBuffer();
+
+			for(int j=0; j<columns.length; j++)
+			{
+				for(int i=0; i<numberOfInstances; i+=doubles.capacity())
+				{
+					int length = Math.min(doubles.capacity(), numberOfInstances - i);
+
+					doubles.clear();
+					doubles.put(columns[j], i, length);
+
+					chunk.clear();
+					chunk.limit(8 * length);
+					write(channel, chunk);
+				}
+			}
+		}
+		finally {
+			file.close();
+		}
+
+		snapshot.delete();
+
+		if(!temporary.renameTo(snapshot))
+		{
+			temporary.delete();
+			throw new IOException("the temporary file could not be renamed");
+		}
+	}
+
+	/**
+	 * Writes the description of an attribute
+	 *
+	 * @param out output stream
+	 * @param attribute the attribute
+	 * @throws IOException if the attribute cannot be written
+	 */
+
+	private static void writeAttribute(DataOutputStream out, IAttribute attribute) throws IOException
+	{
+		out.writeUTF(attribute.getType().name());
+		out.writeUTF(attribute.getName());
+
+		switch(attribute.getType())
+		{
+			case Numerical:
+				Interval interval = ((NumericalAttribute) attribute).intervalValues();
+				out.writeDouble(interval.getLeft());
+				out.writeDouble(interval.getRight());
+				out.writeUTF(interval.getClosure().name());
+				break;
+			case Integer:
+				net.sf.jclec.util.intset.Interval integerInterval = ((IntegerAttribute) attribute).intervalValues();
+				out.writeInt(integerInterval.getLeft());
+				out.writeInt(integerInterval.getRight());
+				out.writeUTF(integerInterval.getClosure().name());
+				break;
+			case Categorical:
+				List<String> categories = ((CategoricalAttribute) attribute).getCategories();
+				out.writeInt(categories.size());
+				for(String category : categories)
+					out.writeUTF(category);
+				break;
+		}
+	}
+
+	/**
+	 * Reads the description of an attribute
+	 *
+	 * @param in input stream
+	 * @return the attribute
+	 * @throws IOException if the attribute cannot be read
+	 */
+
+	private static IAttribute readAttribute(DataInputStream in) throws IOException
+	{
+		AttributeType type = AttributeType.valueOf(in.readUTF());
+		String name = in.readUTF();
+
+		switch(type)
+		{
+			case Numerical:
+				NumericalAttribute numericalAttribute = new NumericalAttribute();
+				numericalAttribute.setName(name);
+				numericalAttribute.setInterval(new Interval(in.readDouble(), in.readDouble(), Closure.valueOf(in.readUTF())));
+				return numericalAttribute;
+			case Integer:
+				IntegerAttribute integerAttribute = new IntegerAttribute();
+				integerAttribute.setName(name);
+				integerAttribute.setInterval(new net.sf.jclec.util.intset.Interval(in.readInt(), in.readInt(),
+						net.sf.jclec.util.intset.Closure.valueOf(in.readUTF())));
+				return integerAttribute;
+			default:
+				CategoricalAttribute categoricalAttribute = new CategoricalAttribute();
+				categoricalAttribute.setName(name);
+				int numberOfCategories = in.readInt();
+				List<String> categories = new ArrayList<String>(numberOfCategories);
+				for(int k=0; k<numberOfCategories; k++)
+					categories.add(in.readUTF());
+				categoricalAttribute.setCategories(categories);
+				return categoricalAttribute;
+		}
+	}
+
+	/**
+	 * Reads bytes from the current position of a channel until the buffer is full
+	 *
+	 * @param channel the channel
+	 * @param buffer the buffer, flipped to be read when it is full
+	 * @throws IOException if the channel ends before the buffer is full
+	 */
+
+	private static void read(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while(buffer.hasRemaining())
+			if(channel.read(buffer) < 0)
+				throw new EOFException("truncated snapshot");
+
+		buffer.flip();
+	}
+
+	/**
+	 * Writes the remaining bytes of a buffer at the current position of a channel
+	 *
+	 * @param channel the channel
+	 * @param buffer the buffer
+	 * @throws IOException if the bytes cannot be written
+	 */
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/**
+	 * Computes the CRC-32 of a file
+	 *
+	 * @param file the file
+	 * @return the checksum
+	 * @throws IOException if the file cannot be read
+	 */
+
+	private static long checksum(File file) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		byte[] bytes = new byte[1 << 16];
+
+		InputStream in = new FileInputStream(file);
+
+		try {
+			int read;
+			while((read = in.read(bytes)) != -1)
+				crc.update(bytes, 0, read);
+		}
+		finally {
+			in.close();
+		}
+
+		return crc.getValue();
+	}
+
+	/**
+	 * Rounds a position up to a multiple of 8
+	 *
+	 * @param position the position
+	 * @return the aligned position
+	 */
+
+	private static int align(int position)
+	{
+		return (position + 7) & ~7;
+	}
+}
@@ -0,0 +1,150 @@
+package net.sf.jclec.problem.util.dataset.instance;
+
+/**
+ * Implementation of the IInstance interface as a view over a columnar dataset.
+ *
+ * The instance does not own its values, it reads and writes them in the columns
+ * of the dataset (columns[attribute][index]). It is used by the ColumnarDataSet
+ * to offer the row-oriented IInstance interface without keeping a value array per instance.
+ *
+ */
+
+public class ColumnarInstance implements IInstance
+{
+	/////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Properties
+	/////////////////////////////////////////////////////////////
+
+	private static final long serialVersionUID = -3062478931722465071L;
+
+	/** Attribute columns of the dataset */
+
+	protected double[][] columns;
+
+	/** Index of this instance in the columns */
+
+	protected int index;
+
+	/** weight of this instance */
+
+	protected double weight;
+
+	/////////////////////////////////////////////////////////////
+	// --------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////
+
+	/**
+	 * Default constructor
+	 *
+	 * @param columns Attribute columns of the dataset
+	 * @param index Index of the instance in the columns
+	 */
+
+	public ColumnarInstance(double[][] columns, int index)
+	{
+		super();
+
+		this.columns = columns;
+		this.index = index;
+	}
+
+	/////////////////////////////////////////////////////////////
+	// ------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////
+
+	/**
+	 * Get the attribute columns this instance reads from
+	 *
+	 * @return the attribute columns
+	 */
+
+	public final double[][] getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * Get the index of this instance in the columns
+	 *
+	 * @return the instance index
+	 */
+
+	public final int getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Sets the weigth for this instance
+	 *
+	 * @param weight New weigth value
+	 */
+
+	public final void setWeight(double weight)
+	{
+		this.weight = weight;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+
+	public double getWeight()
+	{
+		return weight;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+
+	public double getValue(int attributeIndex)
+	{
+		return columns[attributeIndex][index];
+	}
+
+	/**
+	 * Returns a new array with the values of this instance
+	 *
+	 * {@inheritDoc}
+	 */
+
+	public double[] getValues()
+	{
+		double[] values = new double[columns.length];
+
+		for(int i=0; i<columns.length; i++)
+			values[i] = columns[i][index];
+
+		return values;
+	}
+
+	/**
+	 * Writes the values in the columns of the dataset
+	 *
+	 * {@inheritDoc}
+	 */
+
+	public void setValues(double[] values)
+	{
+		for(int i=0; i<columns.length; i++)
+			columns[i][index] = values[i];
+	}
+
+	/**
+	 * Returns a standalone copy of this instance
+	 *
+	 * {@inheritDoc}
+	 */
+
+	public Instance copy()
+	{
+		Instance result = new Instance(columns.length);
+
+		for(int i=0; i<columns.length; i++)
+			result.setValue(i,columns[i][index]);
+		result.setWeight(weight);
+
+		return result;
+	}
+}
@@ -0,0 +1,155 @@
+package net.sf.jclec.problem.classification.algorithm.ga;
+
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
+import net.sf.jclec.problem.classification.crisprule.RuleSamples;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+import net.sf.jclec.problem.util.dataset.InstanceBitSet;
+import net.sf.jclec.problem.util.dataset.KeelDataSet;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+
+/**
+ * Checks that the fitness computed from the popcounts of the coverage bitsets
+ * is the fitness of the confusion matrix counted instance by instance with
+ * the stack interpreter, for every class of the bundled datasets.
+ *
+ */
+
+public class GAEvaluatorTest extends TestCase
+{
+	/** Random antecedents per class and dataset */
+
+	private static final int RULES = 40;
+
+	/** Weights of the configurations */
+
+	private static final double W1 = 0.7, W2 = 0.8;
+
+	/**
+	 * Compares the fitness and the coverage with the instance loop
+	 */
+
+	public void testSameFitnessAsInstanceLoop()
+	{
+		Random random = new Random(3);
+
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet dataset = RuleSamples.loadKeel(fileName);
+			int numClasses = dataset.getMetadata().numberOfClasses();
+
+			GAEvaluator evaluator = new GAEvaluator();
+			evaluator.setW1(W1);
+			evaluator.setW2(W2);
+			evaluator.setDataset(dataset);
+
+			for(int c = 0; c < numClasses; c++)
+			{
+				evaluator.setClassifiedClass(c);
+
+				for(int r = 0; r < RULES; r++)
+				{
+					ExprTree antecedent = RuleSamples.randomAntecedent(dataset, random);
+					CrispRule rule = new CrispRule(antecedent);
+					rule.setConsequent(c);
+
+					SyntaxTreeRuleIndividual individual = new SyntaxTreeRuleIndividual(null, rule);
+					evaluator.evaluate(individual);
+
+					String message = fileName + " class " + c + " " + antecedent;
+
+					assertEquals(message, loopFitness(antecedent, dataset, c), ((SimpleValueFitness) individual.getFitness()).getValue(), 0.0);
+					assertCoverage(message, antecedent, dataset, rule.getCoverage(evaluator.getColumnarDataset()));
+				}
+			}
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Fitness of the confusion matrix counted over the instances with the interpreter
+	 *
+	 * @param antecedent the antecedent of the rule
+	 * @param dataset the dataset
+	 * @param classifiedClass the positive class
+	 * @return the fitness
+	 */
+
+	private static double loopFitness(ExprTree antecedent, KeelDataSet dataset, int classifiedClass)
+	{
+		int tp = 0, fp = 0, tn = 0, fn = 0;
+
+		int classIndex = dataset.getMetadata().getClassIndex();
+
+		for(IInstance instance : dataset.getInstances())
+		{
+			double value = instance.getValue(classIndex);
+
+			if(RuleSamples.interpret(antecedent, instance))
+			{
+				if(value == classifiedClass)
+					tp++;
+				else
+					fp++;
+			}
+			else
+			{
+				if(value != classifiedClass)
+					tn++;
+				else
+					fn++;
+			}
+		}
+
+		double se, sp;
+
+		if(tp + fn == 0)
+			se = 1;
+		else
+			se = (double) tp / (tp + W1*fn);
+
+		if(tn + fp == 0)
+			sp = 1;
+		else
+			sp = (double) tn / (tn + W2*fp);
+
+		return se * sp;
+	}
+
+	/**
+	 * Checks that a coverage bitset holds the instances covered by the interpreter
+	 *
+	 * @param message the failure message
+	 * @param antecedent the antecedent of the rule
+	 * @param dataset the dataset
+	 * @param coverage the coverage
+	 */
+
+	static void assertCoverage(String message, ExprTree antecedent, KeelDataSet dataset, InstanceBitSet coverage)
+	{
+		List<IInstance> instances = dataset.getInstances();
+		int covered = 0;
+
+		assertEquals(message, instances.size(), coverage.size());
+
+		for(int i = 0; i < instances.size(); i++)
+		{
+			boolean expected = RuleSamples.interpret(antecedent, instances.get(i));
+
+			assertEquals(message + " instance " + i, expected, coverage.get(i));
+
+			if(expected)
+				covered++;
+		}
+
+		assertEquals(message, covered, coverage.cardinality());
+	}
+}
@@ -0,0 +1,208 @@
+package net.sf.jclec.problem.classification.algorithm.ge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
+import net.sf.jclec.problem.classification.crisprule.RuleSamples;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+import net.sf.jclec.problem.util.dataset.KeelDataSet;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+
+/**
+ * Checks that the consequent and the fitness obtained from the popcounts of the
+ * coverage bitsets are the ones of the per-class confusion matrices counted
+ * instance by instance with the stack interpreter, on the bundled datasets.
+ * The class totals and the sampled evaluations are checked the same way.
+ *
+ */
+
+public class GEEvaluatorTest extends TestCase
+{
+	/** Random antecedents per dataset */
+
+	private static final int RULES = 200;
+
+	/** Maximum derivation size of the configurations */
+
+	private static final int MAX_DERIV_SIZE = 20;
+
+	/**
+	 * Compares the consequent, the fitness and the coverage with the instance loop
+	 */
+
+	public void testSameFitnessAsInstanceLoop()
+	{
+		Random random = new Random(4);
+
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet dataset = RuleSamples.loadKeel(fileName);
+
+			GEEvaluator evaluator = new GEEvaluator();
+			evaluator.setMaxDerivSize(MAX_DERIV_SIZE);
+			evaluator.setDataset(dataset);
+
+			for(int r = 0; r < RULES; r++)
+			{
+				ExprTree antecedent = RuleSamples.randomAntecedent(dataset, random);
+				CrispRule rule = new CrispRule(antecedent);
+
+				SyntaxTreeRuleIndividual individual = new SyntaxTreeRuleIndividual(null, rule);
+				evaluator.evaluate(individual);
+
+				String message = fileName + " " + antecedent;
+				double[] expected = loopEvaluation(antecedent, dataset, dataset.getInstances());
+
+				assertEquals(message, expected[0], rule.getConsequent(), 0.0);
+				assertEquals(message, expected[1], ((SimpleValueFitness) individual.getFitness()).getValue(), 0.0);
+
+				for(int i = 0; i < dataset.numberOfInstances(); i++)
+					assertEquals(message + " instance " + i, RuleSamples.interpret(antecedent, dataset.getInstances().get(i)),
+							rule.getCoverage(evaluator.getColumnarDataset()).get(i));
+			}
+		}
+	}
+
+	/**
+	 * Compares the class totals and the evaluations on the whole dataset and on a sample
+	 * with the instance loop, reusing one evaluator over all the datasets
+	 */
+
+	public void testClassTotalsAndSamplesAsInstanceLoop()
+	{
+		Random random = new Random(5);
+
+		GEEvaluator evaluator = new GEEvaluator();
+		evaluator.setMaxDerivSize(MAX_DERIV_SIZE);
+
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet dataset = RuleSamples.loadKeel(fileName);
+			evaluator.setDataset(dataset);
+
+			int classIndex = dataset.getMetadata().getClassIndex();
+			int[] totals = new int [dataset.getMetadata().numberOfClasses()];
+
+			for(IInstance instance : dataset.getInstances())
+				totals[(int) instance.getValue(classIndex)]++;
+
+			assertTrue(fileName, Arrays.equals(totals, evaluator.getClassTotals()));
+
+			// Half of the instances in random order
+			List<Integer> indexes = new ArrayList<Integer>();
+			for(int i = 0; i < dataset.numberOfInstances(); i++)
+				indexes.add(i);
+			Collections.shuffle(indexes, random);
+
+			int[] sample = new int [Math.max(1, indexes.size() / 2)];
+			List<IInstance> sampled = new ArrayList<IInstance>();
+
+			for(int i = 0; i < sample.length; i++)
+			{
+				sample[i] = indexes.get(i);
+				sampled.add(dataset.getInstances().get(sample[i]));
+			}
+
+			for(int r = 0; r < RULES; r++)
+			{
+				ExprTree antecedent = RuleSamples.randomAntecedent(dataset, random);
+				CrispRule rule = new CrispRule(antecedent);
+
+				boolean useSample = r % 2 == 0;
+				evaluator.setSample(useSample ? sample : null);
+
+				SyntaxTreeRuleIndividual individual = new SyntaxTreeRuleIndividual(null, rule);
+				evaluator.evaluate(individual);
+
+				String message = fileName + (useSample ? " sample " : " ") + antecedent;
+				double[] expected = loopEvaluation(antecedent, dataset, useSample ? sampled : dataset.getInstances());
+
+				assertEquals(message, expected[0], rule.getConsequent(), 0.0);
+				assertEquals(message, expected[1], ((SimpleValueFitness) individual.getFitness()).getValue(), 0.0);
+			}
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Consequent and fitness of a rule with the confusion matrices of every class
+	 * counted over the instances with the interpreter
+	 *
+	 * @param antecedent the antecedent of the rule
+	 * @param dataset the dataset
+	 * @param instances the instances to count
+	 * @return the consequent and the fitness
+	 */
+
+	static double[] loopEvaluation(ExprTree antecedent, KeelDataSet dataset, List<IInstance> instances)
+	{
+		int numClasses = dataset.getMetadata().numberOfClasses();
+		int classIndex = dataset.getMetadata().getClassIndex();
+
+		int[] tp = new int [numClasses];
+		int[] tn = new int [numClasses];
+		int[] fn = new int [numClasses];
+		int[] fp = new int [numClasses];
+
+		for(IInstance instance : instances)
+		{
+			int value = (int) instance.getValue(classIndex);
+
+			if(RuleSamples.interpret(antecedent, instance))
+			{
+				tp[value]++;
+				for(int i=0; i<numClasses; i++)
+					if(value != i)
+						fp[i]++;
+			}
+			else
+			{
+				fn[value]++;
+				for(int i=0; i<numClasses; i++)
+					if(value != i)
+						tn[i]++;
+			}
+		}
+
+		double se = -1, sp = 1;
+		double seAux, spAux;
+		int bestClass = -1;
+
+		for(int i=0; i<numClasses; i++)
+		{
+			if(tp[i]+fn[i] == 0)
+				seAux = 1;
+			else
+				seAux = (double) tp[i]/(tp[i]+fn[i]);
+
+			if(tn[i]+fp[i] == 0)
+				spAux = 1;
+			else
+				spAux = (double) tn[i]/(tn[i]+fp[i]);
+
+			if(seAux*spAux == se*sp)
+				bestClass = i;
+
+			if(seAux*spAux > se*sp)
+			{
+				se = seAux;
+				sp = spAux;
+				bestClass = i;
+			}
+		}
+
+		double sy = (MAX_DERIV_SIZE - 0.5*antecedent.size() - 0.5)/(MAX_DERIV_SIZE - 1);
+
+		return new double [] {bestClass, se*sp*sy};
+	}
+}
@@ -0,0 +1,128 @@
+package net.sf.jclec.problem.classification.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.problem.classification.algorithm.ga.GAAlgorithm;
+import net.sf.jclec.problem.classification.algorithm.ga.GAEvaluator;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
+import net.sf.jclec.problem.classification.crisprule.RuleSamples;
+import net.sf.jclec.problem.classification.syntaxtree.SyntaxTreeRuleIndividual;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
+import net.sf.jclec.problem.util.dataset.KeelDataSet;
+
+/**
+ * Checks that collapsing the individuals whose rules cover the same training
+ * instances keeps, in the original order, the best individual of each coverage
+ * computed with the stack interpreter and the individuals not evaluated.
+ *
+ */
+
+public class ClassificationAlgorithmTest extends TestCase
+{
+	/** Random antecedents per dataset */
+
+	private static final int RULES = 60;
+
+	/**
+	 * Compares the individuals kept with the ones expected from the interpreter
+	 */
+
+	public void testRemoveEquivalentRules()
+	{
+		Random random = new Random(8);
+
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet dataset = RuleSamples.loadKeel(fileName);
+			ColumnarDataSet columnarDataset = new ColumnarDataSet(dataset);
+
+			GAEvaluator evaluator = new GAEvaluator();
+			evaluator.setDataset(columnarDataset);
+
+			GAAlgorithm algorithm = new GAAlgorithm();
+			algorithm.setEvaluator(evaluator);
+
+			List<IIndividual> inds = new ArrayList<IIndividual>();
+
+			for(ExprTree antecedent : RuleSamples.randomAntecedents(dataset, random, RULES))
+			{
+				IIndividual ind = new SyntaxTreeRuleIndividual(null, new CrispRule(antecedent));
+
+				// A few individuals are not evaluated, the fitness values have ties
+				if(random.nextInt(10) != 0)
+					ind.setFitness(new SimpleValueFitness(random.nextInt(5) / 4.0));
+
+				inds.add(ind);
+			}
+
+			// Best individual of each coverage, the first one on ties
+			Map<String, IIndividual> best = new HashMap<String, IIndividual>();
+
+			for(IIndividual ind : inds)
+			{
+				if(ind.getFitness() == null)
+					continue;
+
+				String coverage = coverage(ind, dataset);
+				IIndividual other = best.get(coverage);
+
+				if(other == null || fitness(ind) > fitness(other))
+					best.put(coverage, ind);
+			}
+
+			List<IIndividual> expected = new ArrayList<IIndividual>();
+
+			for(IIndividual ind : inds)
+				if(ind.getFitness() == null || best.get(coverage(ind, dataset)) == ind)
+					expected.add(ind);
+
+			assertSame(fileName, inds, algorithm.removeEquivalentRules(inds, columnarDataset));
+
+			algorithm.setRemoveEquivalentRules(true);
+
+			List<IIndividual> kept = algorithm.removeEquivalentRules(inds, columnarDataset);
+
+			// The individuals are compared by identity, as their genotypes are not set
+			assertEquals(fileName, expected.size(), kept.size());
+			for(int i = 0; i < expected.size(); i++)
+				assertSame(fileName, expected.get(i), kept.get(i));
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Instances covered by the rule of an individual with the stack interpreter
+	 *
+	 * @param ind the individual
+	 * @param dataset the dataset
+	 * @return the covered instances
+	 */
+
+	private static String coverage(IIndividual ind, KeelDataSet dataset)
+	{
+		return RuleSamples.coverage(((CrispRule) ((SyntaxTreeRuleIndividual) ind).getPhenotype()).getAntecedent(), dataset);
+	}
+
+	/**
+	 * Fitness value of an individual
+	 *
+	 * @param ind the individual
+	 * @return the fitness value
+	 */
+
+	private static double fitness(IIndividual ind)
+	{
+		return ((SimpleValueFitness) ind.getFitness()).getValue();
+	}
+}
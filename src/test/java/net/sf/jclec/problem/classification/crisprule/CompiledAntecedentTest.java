@@ -0,0 +1,86 @@
+package net.sf.jclec.problem.classification.crisprule;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.exprtree.IPrimitive;
+import net.sf.jclec.problem.classification.blocks.AttributeValue;
+import net.sf.jclec.problem.classification.blocks.Greater;
+import net.sf.jclec.problem.util.dataset.KeelDataSet;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+
+/**
+ * Checks that the compiled antecedents cover the same instances as the
+ * ExprTreeFunction stack interpreter, for every operator on the bundled datasets.
+ *
+ */
+
+public class CompiledAntecedentTest extends TestCase
+{
+	/** Random antecedents per operator and dataset */
+
+	private static final int RULES = 30;
+
+	/**
+	 * Compares the compiled antecedents and CrispRule.matches() with the interpreter
+	 */
+
+	public void testCoversAsInterpreter()
+	{
+		Random random = new Random(1);
+
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet dataset = RuleSamples.loadKeel(fileName);
+
+			for(IPrimitive operator : RuleSamples.OPERATORS)
+			{
+				for(int r = 0; r < RULES; r++)
+				{
+					ExprTree antecedent = RuleSamples.randomAntecedent(dataset, operator, random);
+					CompiledAntecedent compiled = CompiledAntecedent.compile(antecedent);
+					CrispRule rule = new CrispRule(antecedent);
+
+					assertNotNull(antecedent.toString(), compiled);
+
+					for(IInstance instance : dataset.getInstances())
+					{
+						String message = fileName + " " + antecedent + " " + instance;
+						boolean expected = RuleSamples.interpret(antecedent, instance);
+
+						assertEquals(message, expected, compiled.covers(instance.getValues()));
+						assertEquals(message, expected, rule.matches(instance));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that incomplete antecedents are left to the interpreter
+	 */
+
+	public void testIncompleteAntecedentIsNotCompiled()
+	{
+		AttributeValue attribute = new AttributeValue();
+
+		ExprTree operand = new ExprTree();
+		operand.addBlock(attribute);
+
+		ExprTree missing = new ExprTree();
+		missing.addBlock(new Greater());
+		missing.addBlock(attribute);
+
+		ExprTree trailing = new ExprTree();
+		trailing.addBlock(new Greater());
+		trailing.addBlock(attribute);
+		trailing.addBlock(attribute);
+		trailing.addBlock(attribute);
+
+		assertNull(CompiledAntecedent.compile(new ExprTree()));
+		assertNull(CompiledAntecedent.compile(operand));
+		assertNull(CompiledAntecedent.compile(missing));
+		assertNull(CompiledAntecedent.compile(trailing));
+	}
+}
@@ -0,0 +1,72 @@
+package net.sf.jclec.problem.classification.crisprule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.problem.classification.base.Rule;
+import net.sf.jclec.problem.util.dataset.ColumnarDataSet;
+import net.sf.jclec.problem.util.dataset.KeelDataSet;
+
+/**
+ * Checks that collapsing the rules of a rule base that cover the same training
+ * instances removes exactly the rules whose coverage, computed with the stack
+ * interpreter, is the one of a previous rule, and does not change the
+ * classification of the training instances.
+ *
+ */
+
+public class CrispRuleBaseTest extends TestCase
+{
+	/** Random antecedents per dataset */
+
+	private static final int RULES = 60;
+
+	/**
+	 * Compares the rule base without equivalent rules with the one expected from the interpreter
+	 */
+
+	public void testRemoveEquivalentRules()
+	{
+		Random random = new Random(7);
+
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet dataset = RuleSamples.loadKeel(fileName);
+			int numClasses = dataset.getMetadata().numberOfClasses();
+
+			List<Rule> rules = new ArrayList<Rule>();
+
+			for(ExprTree antecedent : RuleSamples.randomAntecedents(dataset, random, RULES))
+			{
+				CrispRule rule = new CrispRule(antecedent);
+				rule.setConsequent(random.nextInt(numClasses));
+				rules.add(rule);
+			}
+
+			// Rules expected to remain, the first of each coverage
+			Set<String> coverages = new HashSet<String>();
+			List<Rule> expected = new ArrayList<Rule>();
+
+			for(Rule rule : rules)
+				if(coverages.add(RuleSamples.coverage(rule.getAntecedent(), dataset)))
+					expected.add(rule);
+
+			CrispRuleBase ruleBase = new CrispRuleBase(new ArrayList<Rule>(rules), 0);
+			double[] predicted = ruleBase.classify(dataset);
+
+			int removed = ruleBase.removeEquivalentRules(new ColumnarDataSet(dataset));
+
+			assertEquals(fileName, rules.size() - expected.size(), removed);
+			assertEquals(fileName, expected.size(), ruleBase.getClassificationRules().size());
+			for(int i = 0; i < expected.size(); i++)
+				assertSame(fileName, expected.get(i), ruleBase.getClassificationRules().get(i));
+			assertTrue(fileName, Arrays.equals(predicted, ruleBase.classify(dataset)));
+		}
+	}
+}
@@ -0,0 +1,387 @@
+package net.sf.jclec.problem.classification.crisprule;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.exprtree.IPrimitive;
+import net.sf.jclec.problem.classification.base.Rule;
+import net.sf.jclec.problem.classification.blocks.And;
+import net.sf.jclec.problem.classification.blocks.AttributeValue;
+import net.sf.jclec.problem.classification.blocks.ConstantValue;
+import net.sf.jclec.problem.classification.blocks.Equal;
+import net.sf.jclec.problem.classification.blocks.Greater;
+import net.sf.jclec.problem.classification.blocks.GreaterOrEqual;
+import net.sf.jclec.problem.classification.blocks.In;
+import net.sf.jclec.problem.classification.blocks.Less;
+import net.sf.jclec.problem.classification.blocks.LessOrEqual;
+import net.sf.jclec.problem.classification.blocks.Not;
+import net.sf.jclec.problem.classification.blocks.NotEqual;
+import net.sf.jclec.problem.classification.blocks.Or;
+import net.sf.jclec.problem.classification.blocks.Out;
+import net.sf.jclec.problem.util.dataset.IDataset;
+import net.sf.jclec.problem.util.dataset.KeelDataSet;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+import net.sf.jclec.problem.util.dataset.metadata.IMetadata;
+
+/**
+ * Bundled datasets and random crisp rules shared by the tests that compare the
+ * optimized evaluation of the rules with the ExprTreeFunction stack interpreter.<p/>
+ *
+ * The antecedents are built from every primitive of the blocks package. The constants
+ * are taken from the values of the dataset, so the equality and interval boundaries
+ * are hit, and a few of them are 0, -0 or NaN.
+ *
+ */
+
+public final class RuleSamples
+{
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------------- Constants
+	/////////////////////////////////////////////////////////////////
+
+	/** Directory of the bundled datasets */
+
+	public static final String DATA_DIRECTORY = "data";
+
+	/** Operators that can be placed at the root of an antecedent */
+
+	public static final IPrimitive [] OPERATORS = new IPrimitive [] {new And(), new Or(), new Not(), new In(), new Out(),
+		new Greater(), new GreaterOrEqual(), new Less(), new LessOrEqual(), new Equal(), new NotEqual()};
+
+	/** Comparison operators */
+
+	private static final IPrimitive [] COMPARISONS = Arrays.copyOfRange(OPERATORS, 5, OPERATORS.length);
+
+	/** Maximum depth of the logical operators */
+
+	private static final int MAX_DEPTH = 3;
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Constructors
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Not instantiable
+	 */
+
+	private RuleSamples()
+	{
+		super();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ----------------------------------------------- Public methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Obtains the first training partition of each dataset under the data directory
+	 *
+	 * @return the file names, sorted by dataset
+	 */
+
+	public static List<String> datasetFiles()
+	{
+		List<String> fileNames = new ArrayList<String>();
+
+		File [] directories = new File(DATA_DIRECTORY).listFiles();
+
+		if(directories == null)
+			throw new IllegalStateException("The datasets are not found in " + new File(DATA_DIRECTORY).getAbsolutePath());
+
+		Arrays.sort(directories);
+
+		for(File directory : directories)
+		{
+			String [] files = directory.list();
+
+			if(files == null)
+				continue;
+
+			Arrays.sort(files);
+
+			for(String file : files)
+				if(file.endsWith("-1tra.dat") || file.endsWith("-train.dat"))
+				{
+					fileNames.add(new File(directory, file).getPath());
+					break;
+				}
+		}
+
+		return fileNames;
+	}
+
+	/**
+	 * Loads a KEEL dataset, with the last attribute as class as in the configurations
+	 *
+	 * @param fileName the file name
+	 * @return the dataset
+	 */
+
+	public static KeelDataSet loadKeel(String fileName)
+	{
+		KeelDataSet dataset = new KeelDataSet();
+		dataset.setFileName(fileName);
+		dataset.loadInstances();
+		dataset.getMetadata().setClassIndex(dataset.getMetadata().numberOfAttributes() - 1);
+
+		return dataset;
+	}
+
+	/**
+	 * Builds a random antecedent with an operator at the root
+	 *
+	 * @param dataset the dataset of the attributes and constants
+	 * @param operator the operator of the root, one of OPERATORS
+	 * @param random random generator
+	 * @return the prefix expression tree of the antecedent
+	 */
+
+	public static ExprTree randomAntecedent(IDataset dataset, IPrimitive operator, Random random)
+	{
+		ExprTree tree = new ExprTree();
+
+		addExpression(tree, operator, dataset, random, 1);
+
+		return tree;
+	}
+
+	/**
+	 * Builds a random antecedent
+	 *
+	 * @param dataset the dataset of the attributes and constants
+	 * @param random random generator
+	 * @return the prefix expression tree of the antecedent
+	 */
+
+	public static ExprTree randomAntecedent(IDataset dataset, Random random)
+	{
+		return randomAntecedent(dataset, OPERATORS[random.nextInt(OPERATORS.length)], random);
+	}
+
+	/**
+	 * Builds random antecedents, some of them written again as NOT NOT x, x AND x or x OR x,
+	 * so they cover the same instances as a previous antecedent
+	 *
+	 * @param dataset the dataset of the attributes and constants
+	 * @param random random generator
+	 * @param size the number of antecedents
+	 * @return the antecedents in random order
+	 */
+
+	public static List<ExprTree> randomAntecedents(IDataset dataset, Random random, int size)
+	{
+		List<ExprTree> antecedents = new ArrayList<ExprTree>();
+
+		for(int r = 0; r < size; r++)
+		{
+			if(r > 0 && random.nextInt(3) == 0)
+			{
+				ExprTree antecedent = antecedents.get(random.nextInt(r));
+
+				switch(random.nextInt(3))
+				{
+					case 0:
+						antecedents.add(join(new IPrimitive [] {new Not(), new Not()}, antecedent, null));
+						break;
+					case 1:
+						antecedents.add(join(new IPrimitive [] {new And()}, antecedent, antecedent));
+						break;
+					default:
+						antecedents.add(join(new IPrimitive [] {new Or()}, antecedent, antecedent));
+				}
+			}
+			else
+				antecedents.add(randomAntecedent(dataset, random));
+		}
+
+		Collections.shuffle(antecedents, random);
+
+		return antecedents;
+	}
+
+	/**
+	 * Checks if an antecedent covers an instance with the ExprTreeFunction stack interpreter
+	 *
+	 * @param antecedent the antecedent
+	 * @param instance the instance
+	 * @return true if the antecedent covers the instance
+	 */
+
+	public static boolean interpret(ExprTree antecedent, IInstance instance)
+	{
+		return (Boolean) new InterpretedRule(antecedent).covers(instance);
+	}
+
+	/**
+	 * Instances of a dataset covered by an antecedent with the stack interpreter
+	 *
+	 * @param antecedent the antecedent
+	 * @param dataset the dataset
+	 * @return the covered instances as a string of 0 and 1
+	 */
+
+	public static String coverage(ExprTree antecedent, IDataset dataset)
+	{
+		StringBuilder coverage = new StringBuilder();
+
+		for(IInstance instance : dataset.getInstances())
+			coverage.append(interpret(antecedent, instance) ? '1' : '0');
+
+		return coverage.toString();
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Builds the prefix tree of some operators followed by one or two antecedents
+	 *
+	 * @param operators the operators
+	 * @param first the first antecedent
+	 * @param second the second antecedent, null if there is only one
+	 * @return the tree
+	 */
+
+	private static ExprTree join(IPrimitive [] operators, ExprTree first, ExprTree second)
+	{
+		ExprTree tree = new ExprTree();
+
+		for(IPrimitive operator : operators)
+			tree.addBlock(operator);
+		for(int i = 0; i < first.size(); i++)
+			tree.addBlock(first.getBlock(i));
+		if(second != null)
+			for(int i = 0; i < second.size(); i++)
+				tree.addBlock(second.getBlock(i));
+
+		return tree;
+	}
+
+	/**
+	 * Adds a boolean expression to a tree
+	 *
+	 * @param tree the tree
+	 * @param operator the operator of the expression
+	 * @param dataset the dataset of the attributes and constants
+	 * @param random random generator
+	 * @param depth depth of the expression
+	 */
+
+	private static void addExpression(ExprTree tree, IPrimitive operator, IDataset dataset, Random random, int depth)
+	{
+		tree.addBlock(operator);
+
+		if(operator instanceof And || operator instanceof Or || operator instanceof Not)
+		{
+			int arguments = operator instanceof Not ? 1 : 2;
+
+			for(int i = 0; i < arguments; i++)
+			{
+				IPrimitive child;
+
+				if(depth < MAX_DEPTH && random.nextInt(3) == 0)
+					child = OPERATORS[random.nextInt(OPERATORS.length)];
+				else
+					child = COMPARISONS[random.nextInt(COMPARISONS.length)];
+
+				addExpression(tree, child, dataset, random, depth + 1);
+			}
+		}
+		else
+		{
+			int arguments = (operator instanceof In || operator instanceof Out) ? 3 : 2;
+
+			// The first operand is usually the attribute, as in the grammars
+			for(int i = 0; i < arguments; i++)
+				addOperand(tree, dataset, random, i == 0 ? 0.8 : 0.2);
+		}
+	}
+
+	/**
+	 * Adds a numerical operand to a tree
+	 *
+	 * @param tree the tree
+	 * @param dataset the dataset of the attributes and constants
+	 * @param random random generator
+	 * @param attributeProb probability of adding an attribute instead of a constant
+	 */
+
+	private static void addOperand(ExprTree tree, IDataset dataset, Random random, double attributeProb)
+	{
+		IMetadata metadata = dataset.getMetadata();
+
+		int attribute = random.nextInt(metadata.numberOfAttributes() - 1);
+		if(attribute >= metadata.getClassIndex())
+			attribute++;
+
+		if(random.nextDouble() < attributeProb)
+		{
+			AttributeValue block = new AttributeValue();
+			block.setAttributeIndex(attribute);
+			tree.addBlock(block);
+			return;
+		}
+
+		ConstantValue block = new ConstantValue(null, Double.class);
+
+		switch(random.nextInt(20))
+		{
+			case 0:
+				block.setValue(0.0);
+				break;
+			case 1:
+				block.setValue(-0.0);
+				break;
+			case 2:
+				block.setValue(Double.NaN);
+				break;
+			default:
+				List<IInstance> instances = dataset.getInstances();
+				block.setValue(instances.get(random.nextInt(instances.size())).getValue(attribute));
+		}
+
+		tree.addBlock(block);
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ------------------------------------------------- Inner classes
+	/////////////////////////////////////////////////////////////////
+
+	/** Rule evaluated by the ExprTreeFunction stack interpreter of the base class */
+
+	private static final class InterpretedRule extends Rule
+	{
+		private static final long serialVersionUID = 1L;
+
+		InterpretedRule(ExprTree antecedent)
+		{
+			super(antecedent);
+		}
+
+		public double classify(IInstance instance)
+		{
+			return (Boolean) covers(instance) ? getConsequent() : -1;
+		}
+
+		public String toString(IMetadata metadata)
+		{
+			return String.valueOf(getAntecedent());
+		}
+
+		public int getConditions()
+		{
+			return 0;
+		}
+
+		public Rule copy()
+		{
+			return new InterpretedRule(getAntecedent());
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package net.sf.jclec.problem.util.dataset;
+
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.problem.classification.crisprule.CompiledAntecedent;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
+import net.sf.jclec.problem.classification.crisprule.RuleSamples;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+
+/**
+ * Checks that the columnar store holds the same instances as the row datasets
+ * and that the column scans of the rules give the same results as the row access,
+ * on the bundled datasets.
+ *
+ */
+
+public class ColumnarDataSetTest extends TestCase
+{
+	/** Random antecedents per dataset */
+
+	private static final int RULES = 200;
+
+	/**
+	 * Compares the columns, the instance view and the class labels with the KEEL reader
+	 */
+
+	public void testSameValuesAsRows()
+	{
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet rows = RuleSamples.loadKeel(fileName);
+
+			ColumnarDataSet loaded = new ColumnarDataSet();
+			loaded.setFileName(fileName);
+			loaded.loadInstances();
+			loaded.getMetadata().setClassIndex(rows.getMetadata().getClassIndex());
+
+			assertSameValues(fileName, rows, loaded);
+			assertSameValues(fileName, rows, new ColumnarDataSet(rows));
+		}
+	}
+
+	/**
+	 * Compares the column scans of random rules with the interpreter over the rows
+	 */
+
+	public void testColumnScansAsRowAccess()
+	{
+		Random random = new Random(2);
+
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet rows = RuleSamples.loadKeel(fileName);
+			ColumnarDataSet columns = new ColumnarDataSet(rows);
+
+			List<IInstance> instances = rows.getInstances();
+
+			for(int r = 0; r < RULES; r++)
+			{
+				ExprTree antecedent = RuleSamples.randomAntecedent(rows, random);
+				CompiledAntecedent compiled = CompiledAntecedent.compile(antecedent);
+				CrispRule rule = new CrispRule(antecedent);
+
+				for(int i = 0; i < instances.size(); i++)
+				{
+					String message = fileName + " " + antecedent + " " + i;
+					boolean expected = RuleSamples.interpret(antecedent, instances.get(i));
+
+					assertEquals(message, expected, compiled.covers(columns.getColumns(), i));
+					assertEquals(message, expected, rule.matches(columns, i));
+					assertEquals(message, expected, rule.matches(columns.getInstances().get(i)));
+				}
+			}
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////
+	// ---------------------------------------------- Private methods
+	/////////////////////////////////////////////////////////////////
+
+	/**
+	 * Checks that a columnar dataset has the values of a row dataset
+	 *
+	 * @param fileName the file of the datasets
+	 * @param rows the row dataset
+	 * @param columns the columnar dataset
+	 */
+
+	private static void assertSameValues(String fileName, IDataset rows, ColumnarDataSet columns)
+	{
+		int numberOfAttributes = rows.getMetadata().numberOfAttributes();
+		int classIndex = rows.getMetadata().getClassIndex();
+
+		assertEquals(fileName, rows.numberOfInstances(), columns.numberOfInstances());
+		assertEquals(fileName, rows.getInstances().size(), columns.getInstances().size());
+		assertEquals(fileName, numberOfAttributes, columns.getColumns().length);
+
+		int[] labels = columns.getClassLabels();
+
+		for(int i = 0; i < rows.numberOfInstances(); i++)
+		{
+			IInstance row = rows.getInstances().get(i);
+			IInstance view = columns.getInstances().get(i);
+
+			for(int j = 0; j < numberOfAttributes; j++)
+			{
+				String message = fileName + " instance " + i + " attribute " + j;
+
+				assertEquals(message, 0, Double.compare(row.getValue(j), columns.getColumn(j)[i]));
+				assertEquals(message, 0, Double.compare(row.getValue(j), view.getValue(j)));
+				assertEquals(message, 0, Double.compare(row.getValue(j), view.getValues()[j]));
+			}
+
+			assertEquals(fileName + " instance " + i, (int) row.getValue(classIndex), labels[i]);
+			assertEquals(fileName + " instance " + i, 0, Double.compare(row.getWeight(), view.getWeight()));
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package net.sf.jclec.problem.util.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.sf.jclec.exprtree.ExprTree;
+import net.sf.jclec.problem.classification.crisprule.CrispRule;
+import net.sf.jclec.problem.classification.crisprule.RuleSamples;
+import net.sf.jclec.problem.util.dataset.instance.IInstance;
+
+/**
+ * Checks the token counts of the GA token competition, computed on the words of
+ * the positive class, against the competition over the instances with the
+ * stack interpreter, for every class of the bundled datasets.
+ *
+ */
+
+public class InstanceBitSetTest extends TestCase
+{
+	/** Random antecedents per class and dataset */
+
+	private static final int RULES = 60;
+
+	/**
+	 * Checks that the word index of each class has exactly the words with instances of the class
+	 */
+
+	public void testClassWordIndex()
+	{
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			ColumnarDataSet dataset = new ColumnarDataSet(RuleSamples.loadKeel(fileName));
+
+			for(int c = 0; c < dataset.getMetadata().numberOfClasses(); c++)
+			{
+				InstanceBitSet positives = dataset.getClassBitSet(c);
+				int[] wordIndex = dataset.getClassWordIndex(c);
+
+				boolean[] hasInstances = new boolean[(dataset.numberOfInstances() + 63) / 64];
+
+				for(int i = positives.nextSetBit(0); i >= 0; i = positives.nextSetBit(i + 1))
+					hasInstances[i / 64] = true;
+
+				int k = 0;
+
+				for(int w = 0; w < hasInstances.length; w++)
+					if(hasInstances[w])
+						assertEquals(fileName + " class " + c, w, wordIndex[k++]);
+
+				assertEquals(fileName + " class " + c, k, wordIndex.length);
+			}
+		}
+	}
+
+	/**
+	 * Compares the tokens covered and seized by each rule with the competition over the instances
+	 */
+
+	public void testTokenCompetitionAsInstanceLoop()
+	{
+		Random random = new Random(6);
+
+		for(String fileName : RuleSamples.datasetFiles())
+		{
+			KeelDataSet rows = RuleSamples.loadKeel(fileName);
+			ColumnarDataSet dataset = new ColumnarDataSet(rows);
+
+			List<IInstance> instances = rows.getInstances();
+			int classIndex = rows.getMetadata().getClassIndex();
+
+			for(int c = 0; c < rows.getMetadata().numberOfClasses(); c++)
+			{
+				List<ExprTree> antecedents = new ArrayList<ExprTree>();
+
+				for(int r = 0; r < RULES; r++)
+				{
+					// Some rules are repeated, as the clones of the population
+					if(r > 0 && random.nextInt(4) == 0)
+						antecedents.add(antecedents.get(random.nextInt(r)));
+					else
+						antecedents.add(RuleSamples.randomAntecedent(rows, random));
+				}
+
+				InstanceBitSet positives = dataset.getClassBitSet(c);
+				int[] positiveWords = dataset.getClassWordIndex(c);
+
+				InstanceBitSet patternsCovered = new InstanceBitSet(dataset.numberOfInstances());
+				InstanceBitSet plainCovered = new InstanceBitSet(dataset.numberOfInstances());
+				boolean[] loopCovered = new boolean[instances.size()];
+
+				for(ExprTree antecedent : antecedents)
+				{
+					// Competition over the instances, as in the previous revision
+					int loopCount = 0, loopSeized = 0;
+
+					for(int j = 0; j < instances.size(); j++)
+					{
+						IInstance instance = instances.get(j);
+
+						if(instance.getValue(classIndex) == c && RuleSamples.interpret(antecedent, instance))
+						{
+							loopCount++;
+
+							if(!loopCovered[j])
+							{
+								loopCovered[j] = true;
+								loopSeized++;
+							}
+						}
+					}
+
+					InstanceBitSet covered = new CrispRule(antecedent).getCoverage(dataset);
+					String message = fileName + " class " + c + " " + antecedent;
+
+					assertEquals(message, loopCount, covered.andCardinality(positives));
+					assertEquals(message, loopCount, covered.andCardinality(positives, positiveWords));
+					assertEquals(message, loopSeized, plainCovered.addAnd(covered, positives));
+					assertEquals(message, loopSeized, patternsCovered.addAnd(covered, positives, positiveWords));
+				}
+
+				for(int j = 0; j < instances.size(); j++)
+					assertEquals(fileName + " class " + c + " instance " + j, loopCovered[j], patternsCovered.get(j));
+			}
+		}
+	}
+}